@@ -0,0 +1,90 @@
+package com.jp.markethub.client;
+
+import com.jp.markethub.common.BinaryCodec;
+import com.jp.markethub.common.FixedPoint;
+import com.jp.markethub.consumer.feature.OutputEncoding;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link FeedDecoder} decoding one read worth of messages, CSV unkeyed and keyed against binary.
+ * {@code gc.alloc.rate.norm} must stay at zero, the keyed symbols are interned during warm up.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeedDecoderBenchmark {
+    private static final int MESSAGES = 64;
+
+    private ByteBuffer csv;
+    private ByteBuffer keyedCsv;
+    private ByteBuffer binary;
+    private FeedDecoder csvDecoder;
+    private FeedDecoder binaryDecoder;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        StringBuilder plain = new StringBuilder();
+        StringBuilder keyed = new StringBuilder();
+        binary = ByteBuffer.allocateDirect(MESSAGES * BinaryCodec.MESSAGE_LENGTH);
+        ByteBuffer message = ByteBuffer.allocate(BinaryCodec.MESSAGE_LENGTH);
+        for (int i = 0; i < MESSAGES; i++) {
+            plain.append(i).append(",103.25,104.5,103.75\n");
+            keyed.append(i).append(",SYM").append(i % 8).append(",103.25,104.5,103.75\n");
+            BinaryCodec.encodeBidOfferLastPrice(message, i, i % 8, 103_250_000, 104_500_000, FixedPoint.NULL);
+            binary.put(message.array());
+        }
+        csv = direct(plain.toString());
+        keyedCsv = direct(keyed.toString());
+        binary.flip();
+        MarketDataListener listener = (sequence, symbolId, bid, offer, last) -> {
+            this.blackhole.consume(sequence);
+            this.blackhole.consume(bid + offer + last + symbolId);
+        };
+        csvDecoder = new FeedDecoder(OutputEncoding.CSV, listener);
+        binaryDecoder = new FeedDecoder(OutputEncoding.BINARY, listener);
+    }
+
+    private static ByteBuffer direct(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return buffer;
+    }
+
+    @Benchmark
+    public int decodeCsv() {
+        csv.position(0);
+        return csvDecoder.decode(csv);
+    }
+
+    @Benchmark
+    public int decodeKeyedCsv() {
+        keyedCsv.position(0);
+        return csvDecoder.decode(keyedCsv);
+    }
+
+    @Benchmark
+    public int decodeBinary() {
+        binary.position(0);
+        return binaryDecoder.decode(binary);
+    }
+}
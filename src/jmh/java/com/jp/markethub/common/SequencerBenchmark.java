@@ -0,0 +1,51 @@
+package com.jp.markethub.common;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Sequencer} as the hub uses it, one producer thread incrementing while feature threads poll it.
+ * The uncontended figures are the floor the contended ones are judged against.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SequencerBenchmark {
+
+    private final Sequencer sequencer = new Sequencer();
+
+    @Benchmark
+    @Group("uncontended")
+    @GroupThreads(1)
+    public void incrementAlone() {
+        sequencer.increment();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public void increment() {
+        sequencer.increment();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public long get() {
+        return sequencer.get();
+    }
+}
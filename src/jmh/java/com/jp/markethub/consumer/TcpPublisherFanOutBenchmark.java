@@ -0,0 +1,126 @@
+package com.jp.markethub.consumer;
+
+import com.jp.markethub.MarketHub;
+import com.jp.markethub.common.wait.WaitStrategyType;
+import com.jp.markethub.config.MarketHubConfig;
+import com.jp.markethub.transport.ClientSession;
+import com.jp.markethub.transport.OverflowPolicy;
+import com.jp.markethub.transport.TcpPublisher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TcpPublisher#publish} fanning a collated message out to N loopback clients. A single thread drains
+ * the client ends, clients that fall behind drop messages rather than being disconnected so N holds.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TcpPublisherFanOutBenchmark {
+    private static final int PORT = 0;
+
+    @Param({"1", "4", "16"})
+    int clients;
+
+    private final List<SocketChannel> channels = new ArrayList<>();
+    private ConsumerManager consumerManager;
+    private ServerSocketChannel server;
+    private Selector drainSelector;
+    private Thread drainer;
+    private TcpPublisher publisher;
+    private byte[] message;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        MarketHubConfig config = new MarketHubConfig();
+        //-- The publisher finds its clients through the hub, which is never started here
+        MarketHub hub = new MarketHub(config) {
+            @Override
+            public ConsumerManager getConsumerManagerForPort(int port) {
+                return consumerManager;
+            }
+        };
+        consumerManager = new ConsumerManager(hub, WaitStrategyType.BUSY_SPIN.create(), OverrunPolicy.SKIP_TO_OLDEST);
+
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        drainSelector = Selector.open();
+        for (int i = 0; i < clients; i++) {
+            SocketChannel client = SocketChannel.open(server.getLocalAddress());
+            client.configureBlocking(false);
+            client.register(drainSelector, SelectionKey.OP_READ);
+            SocketChannel accepted = server.accept();
+            accepted.configureBlocking(false);
+            channels.add(client);
+            channels.add(accepted);
+            consumerManager.clients.add(new ClientSession(accepted, OverflowPolicy.DROP, config.getOutboundBufferSize(PORT)));
+        }
+        drainer = new Thread(this::drain, "fan-out-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+
+        publisher = new TcpPublisher(hub, PORT);
+        message = "123456,103.25,104.5,103.75".getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private void drain() {
+        ByteBuffer sink = ByteBuffer.allocateDirect(1 << 16);
+        try {
+            while (drainSelector.isOpen()) {
+                drainSelector.select();
+                for (SelectionKey key : drainSelector.selectedKeys()) {
+                    while (((SocketChannel) key.channel()).read(sink) > 0) {
+                        sink.clear();
+                    }
+                    sink.clear();
+                }
+                drainSelector.selectedKeys().clear();
+            }
+        } catch (Exception e) {
+            //-- Torn down
+        }
+    }
+
+    @Benchmark
+    public void publish() {
+        publisher.publish(message, message.length);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, InterruptedException {
+        publisher.close();
+        drainSelector.close();
+        drainer.join(1000);
+        for (SocketChannel channel : channels) {
+            channel.close();
+        }
+        server.close();
+    }
+}
@@ -0,0 +1,76 @@
+package com.jp.markethub.consumer.feature;
+
+import com.jp.markethub.common.SymbolTable;
+import com.jp.markethub.producer.ProducerType;
+import com.jp.markethub.transport.ClientSession;
+import com.jp.markethub.transport.TransportContract;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link BidOfferLastPrice#onUpdate} on its own, the transport only hands the output to a blackhole.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BidOfferLastPriceBenchmark {
+
+    @Param({"CSV", "BINARY"})
+    OutputEncoding encoding;
+
+    @Param({"false", "true"})
+    boolean keyed;
+
+    private BidOfferLastPrice feature;
+    private byte[] bidOffer;
+    private byte[] lastPrice;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        TransportContract transport = new TransportContract() {
+            @Override
+            public void publish(byte[] data, int length) {
+                blackhole.consume(data);
+            }
+
+            @Override
+            public boolean send(ClientSession client, int symbolId, byte[] data, int length) {
+                return false;
+            }
+
+            @Override
+            public Integer getPort() {
+                return 0;
+            }
+        };
+        feature = new BidOfferLastPrice(transport, false, encoding, keyed ? new SymbolTable() : null, 1024);
+        bidOffer = (keyed ? "IBM,103.25,104.5" : "1,103.25,104.5").getBytes(StandardCharsets.US_ASCII);
+        lastPrice = (keyed ? "IBM,103.75" : "1,103.75").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Benchmark
+    public void bidOffer() {
+        feature.onUpdate(bidOffer, bidOffer.length, ProducerType.BIDOFFER);
+    }
+
+    @Benchmark
+    public void lastPrice() {
+        feature.onUpdate(lastPrice, lastPrice.length, ProducerType.LASTPRICE);
+    }
+}
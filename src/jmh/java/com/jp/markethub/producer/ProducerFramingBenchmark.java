@@ -0,0 +1,83 @@
+package com.jp.markethub.producer;
+
+import com.jp.markethub.common.SymbolTable;
+import com.jp.markethub.config.MarketHubConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Framing throughput of {@link Producer}, a fixed run of messages is handed over in chunks the way
+ * the socket would deliver it, a chunk boundary falling anywhere inside a message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProducerFramingBenchmark {
+    static final int MESSAGES = 256;
+
+    //-- Length of each message including its ';'
+    @Param({"16", "64", "256"})
+    int messageSize;
+
+    //-- Bytes handed over per read
+    @Param({"64", "1460", "16384"})
+    int chunkSize;
+
+    @Param({"false", "true"})
+    boolean typedIngest;
+
+    private Producer producer;
+    private ByteBuffer stream;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MarketHubConfig config = new MarketHubConfig();
+        config.setTypedIngest(typedIngest);
+        producer = new Producer(ProducerType.BIDOFFER, 0, config, new SymbolTable(), null);
+        stream = ByteBuffer.allocateDirect(messageSize * MESSAGES);
+        for (int i = 0; i < MESSAGES; i++) {
+            stream.put(message(i));
+        }
+    }
+
+    private byte[] message(int sequence) {
+        byte[] message = new byte[messageSize];
+        byte[] fields = (sequence + ",1.25,2.5").getBytes(StandardCharsets.US_ASCII);
+        //-- Pad the offer price with trailing zeros up to the requested size
+        Arrays.fill(message, (byte) '0');
+        System.arraycopy(fields, 0, message, 0, Math.min(fields.length, messageSize - 1));
+        message[messageSize - 1] = ';';
+        return message;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public long frame() {
+        stream.clear();
+        while (stream.hasRemaining()) {
+            stream.limit(Math.min(stream.position() + chunkSize, stream.capacity()));
+            producer.receive(stream);
+            stream.limit(stream.capacity());
+        }
+        return producer.getSequencer().get();
+    }
+}
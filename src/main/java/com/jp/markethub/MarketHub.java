@@ -1,12 +1,23 @@
 package com.jp.markethub;
 
+import com.jp.markethub.common.SymbolTable;
+import com.jp.markethub.common.thread.ThreadRole;
+import com.jp.markethub.common.thread.ThreadTopology;
 import com.jp.markethub.config.MarketHubConfig;
 import com.jp.markethub.consumer.ConsumerManager;
 import com.jp.markethub.consumer.ConsumerFactory;
 import com.jp.markethub.consumer.feature.FeatureContract;
+import com.jp.markethub.journal.JournalWriter;
+import com.jp.markethub.journal.ReplayServer;
 import com.jp.markethub.log.Logger;
+import com.jp.markethub.metrics.HubMetrics;
+import com.jp.markethub.metrics.MetricsEndpoint;
+import com.jp.markethub.producer.IngestMode;
+import com.jp.markethub.producer.IngestReactor;
 import com.jp.markethub.producer.Producer;
 import com.jp.markethub.producer.ProducerType;
+import com.jp.markethub.transport.ClientSession;
+import com.jp.markethub.transport.SessionMode;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
@@ -14,17 +25,22 @@ import java.nio.channels.*;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 public class MarketHub {
     private static final Logger logger = Logger.getInstance();
     private final MarketHubConfig config;
+    //-- Every thread of the hub is created here, dedicated to a single role
+    private final ThreadTopology threads;
 
-
-    private ExecutorService executor;
     private Selector selector;
+    private IngestReactor ingestReactor;
+    private final SymbolTable symbolTable = new SymbolTable();
+    private JournalWriter journalWriter;
+    private ReplayServer replayServer;
+    //-- Null unless metrics are enabled
+    private final HubMetrics metrics;
+    private MetricsEndpoint metricsEndpoint;
 
     private final Map<ProducerType, Producer> producers = new ConcurrentHashMap<>();
     private final Map<SocketChannel, FeatureContract> consumers = new ConcurrentHashMap<>();
@@ -34,31 +50,54 @@ public class MarketHub {
 
     public MarketHub(MarketHubConfig config) {
         this.config = config;
+        this.threads = new ThreadTopology(config);
+        this.metrics = config.isMetricsEnabled() ? new HubMetrics() : null;
     }
 
     public void startConsumer() throws IOException {
 
+        if (config.getLogFile() != null) {
+            logger.startAsync(config.getLogFile(), config.getLogRingCapacity());
+        }
         if (logger.isDebugEnabled()) {
             logger.debug(MarketHub.class, "Starting MarketHub server...");
         }
         ConsumerFactory.initialize(this);
 
-        if (executor == null || executor.isShutdown()) {
-            executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-        }
-
         selector = Selector.open();
 
         //-- Start consumer servers for each publicly exposed port
         for (Map.Entry<Integer, FeatureContract> entry : ConsumerFactory.getExposedPorts().entrySet()) {
-            startConsumerServer(entry.getKey());
+            if (entry.getValue().getTcpPublisher().acceptsConnections()) {
+                startConsumerServer(entry.getKey());
+            } else {
+                startConnectionlessFeature(entry.getKey(), entry.getValue());
+            }
+        }
+
+        if (config.getJournalDirectory() != null) {
+            startJournal();
         }
 
-        submit(this::runSelectorLoop);
+        if (metrics != null) {
+            metrics.registerMBeans();
+            metricsEndpoint = new MetricsEndpoint(metrics, config.getMetricsPort(), threads);
+            metricsEndpoint.start();
+        }
+
+        threads.start(ThreadRole.ACCEPTOR, "acceptor", this::runSelectorLoop);
+    }
+
+    //-- The journal tails the producer rings and serves replays on threads of its own
+    private void startJournal() throws IOException {
+        journalWriter = new JournalWriter(this);
+        journalWriter.start(threads);
+        replayServer = new ReplayServer(journalWriter, config.getReplayPort(), threads);
+        replayServer.start();
     }
 
-    public void submit(Runnable runSelectorLoop) {
-        executor.execute(runSelectorLoop);
+    public ThreadTopology getThreads() {
+        return threads;
     }
 
     private void startConsumerServer(int port) throws IOException {
@@ -73,6 +112,20 @@ public class MarketHub {
         }
     }
 
+    //-- Nobody connects to a connectionless transport, so its feature starts publishing right away
+    private void startConnectionlessFeature(int port, FeatureContract feature) throws IOException {
+        feature.getTcpPublisher().start();
+        ConsumerManager consumerManager = getOrCreateConsumerManager(port);
+        consumerManager.registerInterest(feature.getInterestList());
+        consumerManager.registerFeature(feature);
+        consumerManager.start();
+    }
+
+    private ConsumerManager getOrCreateConsumerManager(int port) {
+        return consumerManagerMap.computeIfAbsent(port,
+                p -> new ConsumerManager(this, config.getWaitStrategy(p).create(), config.getOverrunPolicy(p)));
+    }
+
     private void runSelectorLoop() {
         while (running && !Thread.currentThread().isInterrupted()) {
             try {
@@ -83,7 +136,7 @@ public class MarketHub {
                     logger.error(MarketHub.class, "Selector closed normally");
                 }
             } catch (IOException e) {
-                logger.error(MarketHub.class, "Selector error: " + e.getMessage());
+                logger.error(MarketHub.class, "Selector error: {}", e.getMessage());
             }
         }
     }
@@ -98,6 +151,8 @@ public class MarketHub {
 
             if (key.isAcceptable()) {
                 handleAccept(key);
+            } else if (key.isReadable()) {
+                handleCommands(key);
             }
         }
     }
@@ -115,7 +170,10 @@ public class MarketHub {
             FeatureContract feature = ConsumerFactory.getConsumer(port);
 
             //-- Wire the three
-            wireClientFeatureToPort(client, feature, port);
+            ClientSession session = wireClientFeatureToPort(client, feature, port);
+
+            //-- Listen for the subscriptions the client may send
+            client.register(selector, SelectionKey.OP_READ, session);
 
             if (logger.isDebugEnabled()) {
                 logger.debug(MarketHub.class, "New consumer connected: " + client.getRemoteAddress());
@@ -125,17 +183,41 @@ public class MarketHub {
         }
     }
 
-    private void wireClientFeatureToPort(SocketChannel client, FeatureContract feature, int port) {
+    private ClientSession wireClientFeatureToPort(SocketChannel client, FeatureContract feature, int port) {
         consumers.put(client, feature);
-        consumerManagerMap.putIfAbsent(port, new ConsumerManager(this));
-        ConsumerManager consumerManager = consumerManagerMap.get(port);
-        consumerManager.addClient(client);
+        ConsumerManager consumerManager = getOrCreateConsumerManager(port);
+        //-- A thread per client session queues in its own writer, the outbound buffer would go unused
+        int outboundBufferSize = config.getSessionMode(port) == SessionMode.THREAD_PER_CLIENT ? 0 : config.getOutboundBufferSize(port);
+        ClientSession session = new ClientSession(client, config.getOverflowPolicy(port), outboundBufferSize);
+        consumerManager.addClient(session);
         consumerManager.registerInterest(feature.getInterestList());
         consumerManager.registerFeature(feature);
         consumerManager.start();
+        return session;
+    }
+
+    private void handleCommands(SelectionKey key) {
+        ClientSession session = (ClientSession) key.attachment();
+        SocketChannel channel = session.getChannel();
+        try {
+            int port = ((InetSocketAddress) channel.getLocalAddress()).getPort();
+            ConsumerManager consumerManager = consumerManagerMap.get(port);
+            if (session.readCommands(symbolTable, consumerManager.getSubscriptions()) == -1) {
+                key.cancel();
+                closeClientChannel(channel);
+            }
+        } catch (IOException e) {
+            key.cancel();
+            closeClientChannel(channel);
+        }
     }
 
     private void closeClientChannel(SocketChannel channel) {
+        //-- Already dropped and closed by the publisher, which released it from its consumer manager
+        if (!channel.isOpen()) {
+            consumers.remove(channel);
+            return;
+        }
         try {
             FeatureContract consumer = consumers.remove(channel);
             if (consumer != null) {
@@ -145,37 +227,46 @@ public class MarketHub {
             }
             channel.close();
         } catch (IOException e) {
-            logger.error(MarketHub.class, "Error closing channel: " + e.getMessage());
+            logger.error(MarketHub.class, "Error closing channel: {}", e.getMessage());
         }
     }
 
+    //-- A client the publisher side dropped on its own must not be kept around
+    public void onClientRemoved(SocketChannel channel) {
+        consumers.remove(channel);
+    }
+
     //-- This must be invoked externally via Autosys or other job
     public void connectToProducer(ProducerType type, int port) throws IOException {
-        Producer producer = new Producer(type, port, config);
+        Producer producer = new Producer(type, port, config, symbolTable, metrics);
         producers.put(type, producer);
-        producer.connect();
+        IngestMode mode = config.getIngestMode(type);
+        if (mode == IngestMode.BUSY_POLL) {
+            producer.connect(threads);
+        } else {
+            producer.connect(getIngestReactor());
+        }
         if (logger.isDebugEnabled()) {
-            logger.debug(MarketHub.class, "Connected to " + type + " producer on port " + port);
+            logger.debug(MarketHub.class, "Connected to " + type + " producer on port " + port + " using " + mode);
         }
     }
 
+    private synchronized IngestReactor getIngestReactor() throws IOException {
+        if (ingestReactor == null) {
+            ingestReactor = new IngestReactor(config.getIngestReactorThreads());
+            ingestReactor.start(threads);
+        }
+        return ingestReactor;
+    }
+
     // -- Stop the hub
     public void stop() {
         if(logger.isDebugEnabled()) {
             logger.debug(MarketHub.class, "Stopping MarketHub App");
         }
         running = false;
-        if (executor != null) {
-            executor.shutdown();
-            try {
-                if (!executor.awaitTermination(500, TimeUnit.MILLISECONDS)) {
-                    executor.shutdownNow();
-                }
-            } catch (InterruptedException e) {
-                executor.shutdownNow();
-                Thread.currentThread().interrupt();
-            }
-        }
+        //-- The acceptor blocks in select and features may sleep in their wait strategy, the others are stopped by closing them
+        threads.interrupt(500, TimeUnit.MILLISECONDS, ThreadRole.ACCEPTOR, ThreadRole.FEATURE);
 
         try {
             if (selector != null) {
@@ -183,8 +274,9 @@ public class MarketHub {
             }
             closeAllResources();
         } catch (IOException e) {
-            logger.error(MarketHub.class, "Shutdown error: " + e.getMessage());
+            logger.error(MarketHub.class, "Shutdown error: {}", e.getMessage());
         }
+        logger.stopAsync();
     }
 
     private void closeAllResources() throws IOException {
@@ -194,6 +286,9 @@ public class MarketHub {
             consumerManager.close();
         });
         producers.values().forEach(Producer::disconnect);
+        closeIngestReactor();
+        closeJournal();
+        closeMetrics();
         for (ServerSocketChannel server : consumerServers.values()) {
             server.close();
         }
@@ -203,6 +298,46 @@ public class MarketHub {
         }
     }
 
+    private void closeJournal() {
+        if (replayServer != null) {
+            replayServer.close();
+            replayServer = null;
+        }
+        if (journalWriter != null) {
+            journalWriter.close();
+            journalWriter = null;
+        }
+    }
+
+    private void closeMetrics() {
+        if (metricsEndpoint != null) {
+            metricsEndpoint.close();
+            metricsEndpoint = null;
+            metrics.unregisterMBeans();
+        }
+    }
+
+    private synchronized void closeIngestReactor() {
+        if (ingestReactor != null) {
+            ingestReactor.close();
+            ingestReactor = null;
+        }
+    }
+
+    public MarketHubConfig getConfig() {
+        return config;
+    }
+
+    //-- Instruments seen on any keyed feed, shared by every producer and feature of the hub
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    //-- Null unless metrics are enabled
+    public HubMetrics getMetrics() {
+        return metrics;
+    }
+
     public Producer getProducer(ProducerType type) {
         return producers.get(type);
     }
@@ -219,6 +354,11 @@ public class MarketHub {
         return consumerManagerMap.get(port);
     }
 
+    //-- Client connections the hub still holds, over all ports
+    public int getConnectedClients() {
+        return consumers.size();
+    }
+
     public long getFirstDataTime(ProducerType type) {
         return producers.get(type).getFirstDataTime();
     }
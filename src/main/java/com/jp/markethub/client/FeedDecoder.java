@@ -0,0 +1,135 @@
+package com.jp.markethub.client;
+
+import com.jp.markethub.common.BinaryCodec;
+import com.jp.markethub.common.FixedPoint;
+import com.jp.markethub.common.SymbolTable;
+import com.jp.markethub.consumer.feature.OutputEncoding;
+import com.jp.markethub.log.Logger;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Frames and decodes the collated feed in place, straight out of the buffer it was read into, and hands
+ * every message to a {@link MarketDataListener} as primitives. CSV messages are new line terminated with
+ * an optional symbol as second field, binary ones are laid out by {@link BinaryCodec}. Nothing is created
+ * per message, only the first sight of a symbol on a keyed CSV feed interns it.
+ */
+public final class FeedDecoder {
+    private static final int MAX_FIELDS = 5;
+
+    private final Logger logger = Logger.getInstance();
+    private final OutputEncoding encoding;
+    private final MarketDataListener listener;
+    private final SymbolTable symbolTable = new SymbolTable();
+    //-- Offsets of the commas of the line being decoded
+    private final int[] commas = new int[MAX_FIELDS - 1];
+
+    public FeedDecoder(OutputEncoding encoding, MarketDataListener listener) {
+        this.encoding = encoding;
+        this.listener = listener;
+    }
+
+    /**
+     * Decodes every complete message between the position and the limit of buffer, the position is left
+     * at the first byte of the trailing partial message. Returns the number of messages decoded.
+     */
+    public int decode(ByteBuffer buffer) {
+        return encoding == OutputEncoding.BINARY ? decodeBinary(buffer) : decodeCsv(buffer);
+    }
+
+    private int decodeCsv(ByteBuffer buffer) {
+        int decoded = 0;
+        int start = buffer.position();
+        int end = buffer.limit();
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) == '\n') {
+                if (decodeLine(buffer, start, i)) {
+                    decoded++;
+                }
+                start = i + 1;
+            }
+        }
+        buffer.position(start);
+        return decoded;
+    }
+
+    //-- SequenceNo[,Symbol],BidPrice,OfferPrice,LastPrice in [start, end)
+    private boolean decodeLine(ByteBuffer buffer, int start, int end) {
+        int fields = 1;
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) == ',') {
+                if (fields == MAX_FIELDS) {
+                    fields++;
+                    break;
+                }
+                commas[fields++ - 1] = i;
+            }
+        }
+        if (fields < MAX_FIELDS - 1 || fields > MAX_FIELDS) {
+            logger.error(FeedDecoder.class, "Discarding malformed message of {} fields", fields);
+            return false;
+        }
+        long sequence = parseSequence(buffer, start, commas[0]);
+        if (sequence < 0) {
+            logger.error(FeedDecoder.class, "Discarding message without a valid SequenceNo");
+            return false;
+        }
+        int symbolId = SymbolTable.NO_SYMBOL;
+        int field = 0;
+        if (fields == MAX_FIELDS) {
+            symbolId = symbolTable.getOrAdd(buffer, commas[0] + 1, commas[1]);
+            field = 1;
+        }
+        long bid = FixedPoint.parse(buffer, commas[field] + 1, commas[field + 1]);
+        long offer = FixedPoint.parse(buffer, commas[field + 1] + 1, commas[field + 2]);
+        long last = FixedPoint.parse(buffer, commas[field + 2] + 1, end);
+        listener.onBidOfferLastPrice(sequence, symbolId, bid, offer, last);
+        return true;
+    }
+
+    private static long parseSequence(ByteBuffer buffer, int start, int end) {
+        if (start >= end) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b < '0' || b > '9') {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    private int decodeBinary(ByteBuffer buffer) {
+        int decoded = 0;
+        int offset = buffer.position();
+        int end = buffer.limit();
+        while (end - offset >= BinaryCodec.SEQUENCE_OFFSET) {
+            int length = buffer.getShort(offset + BinaryCodec.LENGTH_OFFSET);
+            if (length < BinaryCodec.SEQUENCE_OFFSET) {
+                //-- Framing is lost, nothing after this can be trusted
+                logger.error(FeedDecoder.class, "Discarding {} bytes after a message of invalid length {}", end - offset, length);
+                offset = end;
+                break;
+            }
+            if (end - offset < length) {
+                break;
+            }
+            if (BinaryCodec.getType(buffer, offset) == BinaryCodec.BID_OFFER_LAST_PRICE && length >= BinaryCodec.MESSAGE_LENGTH) {
+                listener.onBidOfferLastPrice(BinaryCodec.getSequence(buffer, offset), BinaryCodec.getSymbolId(buffer, offset),
+                        BinaryCodec.getBid(buffer, offset), BinaryCodec.getOffer(buffer, offset), BinaryCodec.getLast(buffer, offset));
+                decoded++;
+            }
+            offset += length;
+        }
+        buffer.position(offset);
+        return decoded;
+    }
+
+    //-- Symbol of an id handed out on a keyed CSV feed
+    public String getSymbol(int symbolId) {
+        return symbolTable.getSymbol(symbolId);
+    }
+}
@@ -0,0 +1,26 @@
+package com.jp.markethub.client;
+
+import com.jp.markethub.common.FixedPoint;
+import com.jp.markethub.common.SymbolTable;
+
+/**
+ * Receives the collated feed decoded by a {@link MarketHubClient}, on the client thread and without any
+ * object created per message.
+ */
+public interface MarketDataListener {
+
+    /**
+     * One update, prices are fixed point longs with six decimals and {@link FixedPoint#NULL} when not received yet.
+     * The symbol id is {@link SymbolTable#NO_SYMBOL} on an unkeyed feed, on a keyed CSV feed it is an id of the
+     * client, see {@link MarketHubClient#getSymbol(int)}, on a binary feed the id the hub interned the symbol under.
+     */
+    void onBidOfferLastPrice(long sequence, int symbolId, long bid, long offer, long last);
+
+    //-- Every connection, the first one and each reconnect, starts with the current state of the hub
+    default void onConnected() {
+    }
+
+    //-- The values received so far may be stale until the next onConnected
+    default void onDisconnected() {
+    }
+}
@@ -0,0 +1,194 @@
+package com.jp.markethub.client;
+
+import com.jp.markethub.consumer.feature.OutputEncoding;
+import com.jp.markethub.log.Logger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Supported consumer of a MarketHub port. A thread of its own reads the port into a reusable direct buffer,
+ * where a {@link FeedDecoder} decodes every message in place for the {@link MarketDataListener}, so the
+ * steady state creates no garbage at all.
+ * <p>
+ * A lost connection is retried with a delay doubling up to a maximum, and the symbols subscribed to are
+ * sent again on every new connection, which always starts with the current state of the hub.
+ */
+public class MarketHubClient implements Runnable, AutoCloseable {
+    private final Logger logger = Logger.getInstance();
+    private final String host;
+    private final int port;
+    private final MarketDataListener listener;
+    private final FeedDecoder decoder;
+    private final ByteBuffer readBuffer;
+    private final Set<String> subscriptions = new CopyOnWriteArraySet<>();
+
+    private long initialReconnectDelayNanos = TimeUnit.MILLISECONDS.toNanos(100);
+    private long maxReconnectDelayNanos = TimeUnit.SECONDS.toNanos(5);
+
+    private volatile SocketChannel channel;
+    private volatile boolean running = true;
+    private volatile long connections;
+    private Thread thread;
+
+    public MarketHubClient(String host, int port, OutputEncoding encoding, MarketDataListener listener) {
+        this(host, port, encoding, listener, (int) Math.pow(2, 16));
+    }
+
+    public MarketHubClient(String host, int port, OutputEncoding encoding, MarketDataListener listener, int readBufferSize) {
+        this.host = host;
+        this.port = port;
+        this.listener = listener;
+        this.decoder = new FeedDecoder(encoding, listener);
+        this.readBuffer = ByteBuffer.allocateDirect(readBufferSize);
+    }
+
+    public void setReconnectDelay(long initialDelay, long maxDelay, TimeUnit unit) {
+        this.initialReconnectDelayNanos = unit.toNanos(initialDelay);
+        this.maxReconnectDelayNanos = Math.max(unit.toNanos(maxDelay), initialReconnectDelayNanos);
+    }
+
+    public void start() {
+        thread = new Thread(this, "markethub-client-" + port);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        long reconnectDelay = initialReconnectDelayNanos;
+        while (running) {
+            boolean connected = false;
+            try {
+                connect();
+                connected = true;
+                reconnectDelay = initialReconnectDelayNanos;
+                listener.onConnected();
+                readLoop();
+            } catch (IOException e) {
+                if (running) {
+                    logger.error(MarketHubClient.class, "Connection to port {} lost: {}", port, e.getMessage());
+                }
+            } finally {
+                closeChannel();
+            }
+            if (connected) {
+                listener.onDisconnected();
+            }
+            if (running) {
+                sleep(reconnectDelay);
+                reconnectDelay = Math.min(reconnectDelay * 2, maxReconnectDelayNanos);
+            }
+        }
+    }
+
+    private void connect() throws IOException {
+        SocketChannel socket = SocketChannel.open();
+        channel = socket;
+        socket.connect(new InetSocketAddress(host, port));
+        socket.socket().setTcpNoDelay(true);
+        readBuffer.clear();
+        connections++;
+        for (String symbol : subscriptions) {
+            sendCommand(socket, "SUB,", symbol);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug(MarketHubClient.class, "Connected to " + host + ":" + port);
+        }
+    }
+
+    private void readLoop() throws IOException {
+        SocketChannel socket = channel;
+        while (running) {
+            if (socket.read(readBuffer) == -1) {
+                throw new IOException("Closed by the hub");
+            }
+            readBuffer.flip();
+            decoder.decode(readBuffer);
+            readBuffer.compact();
+            //-- A message that does not fit in the buffer can never be framed, drop it
+            if (!readBuffer.hasRemaining()) {
+                logger.error(MarketHubClient.class, "Dropping message larger than {} bytes", readBuffer.capacity());
+                readBuffer.clear();
+            }
+        }
+    }
+
+    //-- Narrows down a keyed feed to the given symbols, kept and sent again on every reconnect
+    public void subscribe(String symbol) throws IOException {
+        subscriptions.add(symbol);
+        send("SUB,", symbol);
+    }
+
+    public void unsubscribe(String symbol) throws IOException {
+        subscriptions.remove(symbol);
+        send("UNSUB,", symbol);
+    }
+
+    private void send(String command, String symbol) throws IOException {
+        SocketChannel socket = channel;
+        if (socket != null && socket.isConnected()) {
+            sendCommand(socket, command, symbol);
+        }
+    }
+
+    //-- Commands are rare, they are free to allocate
+    private static void sendCommand(SocketChannel socket, String command, String symbol) throws IOException {
+        ByteBuffer line = ByteBuffer.wrap((command + symbol + "\n").getBytes(StandardCharsets.US_ASCII));
+        synchronized (socket) {
+            while (line.hasRemaining()) {
+                socket.write(line);
+            }
+        }
+    }
+
+    private void sleep(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private void closeChannel() {
+        SocketChannel socket = channel;
+        channel = null;
+        try {
+            if (socket != null) {
+                socket.close();
+            }
+        } catch (IOException e) {
+            logger.error(MarketHubClient.class, "Error closing channel: {}", e.getMessage());
+        }
+    }
+
+    //-- Symbol of an id handed to the listener on a keyed CSV feed
+    public String getSymbol(int symbolId) {
+        return decoder.getSymbol(symbolId);
+    }
+
+    //-- Connections made so far, every one after the first is a reconnect
+    public long getConnections() {
+        return connections;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        closeChannel();
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
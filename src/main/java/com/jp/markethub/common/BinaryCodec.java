@@ -0,0 +1,68 @@
+package com.jp.markethub.common;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed width big endian encoding of the collated feed, every message is exactly
+ * {@link #MESSAGE_LENGTH} bytes so a consumer decodes it with a handful of loads.
+ * <pre>
+ * 0   message type (byte) | version (byte) | message length (short) | symbol id (int)
+ * 8   sequence (long)
+ * 16  bid | 24 offer | 32 last, fixed point prices with six decimals, see {@link FixedPoint}
+ * </pre>
+ */
+public final class BinaryCodec {
+    public static final byte BID_OFFER_LAST_PRICE = 1;
+    public static final byte VERSION = 1;
+    public static final int MESSAGE_LENGTH = 40;
+
+    public static final int TYPE_OFFSET = 0;
+    public static final int VERSION_OFFSET = 1;
+    public static final int LENGTH_OFFSET = 2;
+    public static final int SYMBOL_OFFSET = 4;
+    public static final int SEQUENCE_OFFSET = 8;
+    public static final int BID_OFFSET = 16;
+    public static final int OFFER_OFFSET = 24;
+    public static final int LAST_OFFSET = 32;
+
+    private BinaryCodec() {
+    }
+
+    //-- Writes a whole message at the start of dst and returns its length
+    public static int encodeBidOfferLastPrice(ByteBuffer dst, long sequence, int symbolId, long bid, long offer, long last) {
+        dst.put(TYPE_OFFSET, BID_OFFER_LAST_PRICE);
+        dst.put(VERSION_OFFSET, VERSION);
+        dst.putShort(LENGTH_OFFSET, (short) MESSAGE_LENGTH);
+        dst.putInt(SYMBOL_OFFSET, symbolId);
+        dst.putLong(SEQUENCE_OFFSET, sequence);
+        dst.putLong(BID_OFFSET, bid);
+        dst.putLong(OFFER_OFFSET, offer);
+        dst.putLong(LAST_OFFSET, last);
+        return MESSAGE_LENGTH;
+    }
+
+    public static byte getType(ByteBuffer src, int offset) {
+        return src.get(offset + TYPE_OFFSET);
+    }
+
+    //-- Id the hub interned the instrument under, 0 when feeds are not keyed
+    public static int getSymbolId(ByteBuffer src, int offset) {
+        return src.getInt(offset + SYMBOL_OFFSET);
+    }
+
+    public static long getSequence(ByteBuffer src, int offset) {
+        return src.getLong(offset + SEQUENCE_OFFSET);
+    }
+
+    public static long getBid(ByteBuffer src, int offset) {
+        return src.getLong(offset + BID_OFFSET);
+    }
+
+    public static long getOffer(ByteBuffer src, int offset) {
+        return src.getLong(offset + OFFER_OFFSET);
+    }
+
+    public static long getLast(ByteBuffer src, int offset) {
+        return src.getLong(offset + LAST_OFFSET);
+    }
+}
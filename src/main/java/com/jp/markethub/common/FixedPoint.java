@@ -0,0 +1,89 @@
+package com.jp.markethub.common;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Prices as longs with six implied decimals, so they can be compared, stored and shipped without
+ * floating point or text.
+ */
+public final class FixedPoint {
+    public static final long SCALE = 1_000_000L;
+    public static final int DECIMALS = 6;
+
+    //-- Marks a price that has not been received yet
+    public static final long NULL = Long.MIN_VALUE;
+
+    private FixedPoint() {
+    }
+
+    //-- Significant digits of the scaled value that always fit in a long
+    private static final int MAX_DIGITS = 18;
+
+    /**
+     * Parses the ASCII decimal in src[start, end), digits beyond the sixth decimal are truncated.
+     * Returns {@link #NULL} for an empty or malformed field, a field without any digit, or one with
+     * more than 18 significant digits once scaled, which might not fit.
+     */
+    public static long parse(byte[] src, int start, int end) {
+        return parse(src, null, start, end);
+    }
+
+    //-- Same as above for a message still sitting in a read buffer, the buffer position is not moved
+    public static long parse(ByteBuffer src, int start, int end) {
+        return parse(null, src, start, end);
+    }
+
+    //-- Reads from the array when there is one, the buffer otherwise, the branch never changes within a call
+    private static long parse(byte[] array, ByteBuffer buffer, int start, int end) {
+        if (start >= end) {
+            return NULL;
+        }
+        boolean negative = byteAt(array, buffer, start) == '-';
+        int i = negative ? start + 1 : start;
+        long value = 0;
+        int digits = 0;
+        int decimals = -1;
+        boolean hasDigit = false;
+        for (; i < end; i++) {
+            byte b = byteAt(array, buffer, i);
+            if (b == '.' && decimals < 0) {
+                decimals = 0;
+            } else if (b >= '0' && b <= '9') {
+                hasDigit = true;
+                if (decimals >= DECIMALS) {
+                    continue;
+                }
+                if (value != 0 || b != '0') {
+                    if (++digits > MAX_DIGITS) {
+                        return NULL;
+                    }
+                }
+                value = value * 10 + (b - '0');
+                if (decimals >= 0) {
+                    decimals++;
+                }
+            } else {
+                return NULL;
+            }
+        }
+        if (!hasDigit) {
+            return NULL;
+        }
+        int scale = DECIMALS - Math.max(decimals, 0);
+        if (value != 0 && digits + scale > MAX_DIGITS) {
+            return NULL;
+        }
+        for (int d = 0; d < scale; d++) {
+            value *= 10;
+        }
+        return negative ? -value : value;
+    }
+
+    private static byte byteAt(byte[] array, ByteBuffer buffer, int index) {
+        return array != null ? array[index] : buffer.get(index);
+    }
+
+    public static double toDouble(long value) {
+        return (double) value / SCALE;
+    }
+}
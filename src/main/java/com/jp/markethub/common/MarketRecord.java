@@ -0,0 +1,45 @@
+package com.jp.markethub.common;
+
+/**
+ * Reusable view of one decoded message, filled by {@link RecordColumns#read} so reading a typed
+ * record never allocates. Prices are fixed point, see {@link FixedPoint}, a field the message
+ * does not carry is {@link FixedPoint#NULL}.
+ */
+public class MarketRecord {
+    long sequence;
+    int symbolId;
+    long bid;
+    long offer;
+    long last;
+    long ingestNanos;
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public int getSymbolId() {
+        return symbolId;
+    }
+
+    public long getBid() {
+        return bid;
+    }
+
+    public long getOffer() {
+        return offer;
+    }
+
+    public long getLast() {
+        return last;
+    }
+
+    //-- System.nanoTime() taken when the message was framed
+    public long getIngestNanos() {
+        return ingestNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "MarketRecord[" + sequence + "," + symbolId + "," + bid + "," + offer + "," + last + "]";
+    }
+}
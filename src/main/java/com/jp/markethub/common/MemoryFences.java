@@ -0,0 +1,38 @@
+package com.jp.markethub.common;
+
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+
+/**
+ * Load and store fences for the seqlock style reads of the ring. This is the Java 8 version, which has no
+ * public fence API and goes through Unsafe, the multi-release jar replaces it with the {@code VarHandle}
+ * fences from Java 9 on.
+ */
+@SuppressWarnings("restriction")
+public final class MemoryFences {
+    private static final Unsafe UNSAFE;
+
+    static {
+        try {
+            Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            UNSAFE = (Unsafe) field.get(null);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private MemoryFences() {
+    }
+
+    //-- Loads before the fence are not reordered with loads and stores after it
+    public static void loadFence() {
+        UNSAFE.loadFence();
+    }
+
+    //-- Loads and stores before the fence are not reordered with stores after it
+    public static void storeFence() {
+        UNSAFE.storeFence();
+    }
+}
@@ -0,0 +1,78 @@
+package com.jp.markethub.common;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Decoded messages of a ring kept as struct-of-arrays primitive columns indexed by sequence, so a
+ * feature reading a single field touches only that column.
+ * <p>
+ * There is a single writer. Like {@link RingBuffer} every slot carries a seqlock style version, odd
+ * while the writer fills it and even once published, and a reader validates it after copying.
+ */
+public class RecordColumns {
+    private final int mask;
+    private final int[] symbolIds;
+    private final long[] bids;
+    private final long[] offers;
+    private final long[] lasts;
+    private final long[] ingestNanos;
+    private final AtomicLongArray versions;
+
+    public RecordColumns(int slots) {
+        if (slots <= 0 || (slots & (slots - 1)) != 0) {
+            throw new IllegalArgumentException("Buffer size must be power-of-two");
+        }
+        this.mask = slots - 1;
+        this.symbolIds = new int[slots];
+        this.bids = new long[slots];
+        this.offers = new long[slots];
+        this.lasts = new long[slots];
+        this.ingestNanos = new long[slots];
+        this.versions = new AtomicLongArray(slots);
+    }
+
+    //-- Must only be called from the writer thread
+    public void write(long sequence, int symbolId, long bid, long offer, long last, long nanos) {
+        int slot = (int) (sequence & mask);
+        versions.lazySet(slot, (sequence << 1) + 1);
+        MemoryFences.storeFence();
+
+        symbolIds[slot] = symbolId;
+        bids[slot] = bid;
+        offers[slot] = offer;
+        lasts[slot] = last;
+        ingestNanos[slot] = nanos;
+
+        versions.lazySet(slot, (sequence << 1) + 2);
+    }
+
+    /**
+     * Fills record with the columns of the given sequence.
+     * Returns false when the slot has already been reused or was reused while being read.
+     */
+    public boolean read(long sequence, MarketRecord record) {
+        int slot = (int) (sequence & mask);
+        long version = versions.get(slot);
+        if (version != (sequence << 1) + 2) {
+            return false;
+        }
+
+        record.sequence = sequence;
+        record.symbolId = symbolIds[slot];
+        record.bid = bids[slot];
+        record.offer = offers[slot];
+        record.last = lasts[slot];
+        record.ingestNanos = ingestNanos[slot];
+
+        MemoryFences.loadFence();
+        return versions.get(slot) == version;
+    }
+
+    public void reset() {
+        Arrays.fill(symbolIds, 0);
+        for (int i = 0; i < versions.length(); i++) {
+            versions.set(i, 0);
+        }
+    }
+}
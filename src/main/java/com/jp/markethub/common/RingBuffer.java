@@ -0,0 +1,178 @@
+package com.jp.markethub.common;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Variable length record store backed by one contiguous off-heap slab.
+ * <p>
+ * Records are appended back to back and addressed by sequence through a pair of primitive
+ * offset/length arrays, so small messages waste no space and large ones are never truncated.
+ * A record never straddles the end of the slab, the writer skips to the start instead.
+ * <p>
+ * There is a single writer, readers copy a record out by sequence into their own array, through a
+ * view of the slab every reader creates once with {@link #newReadView()} and keeps to itself.
+ * Every slot carries a seqlock style version, odd while the writer fills it and even once it is
+ * published, and the writer announces the byte range it is about to overwrite before touching it.
+ * A reader validates both after copying, so a record overwritten mid-read after the ring wraps is
+ * detected and reported instead of being handed out torn.
+ */
+public class RingBuffer {
+    private static final int PAGE_SIZE = 4096;
+
+    private final ByteBuffer slab;
+    private final ByteBuffer writeView;
+    private final int capacity;
+    private final int maxRecordLength;
+    private final int mask;
+    private final long[] positions;
+    private final int[] lengths;
+    private final long[] timestamps;
+    private final AtomicLongArray versions;
+    private final AtomicLong claimedPosition = new AtomicLong();
+
+    private long writePosition;
+
+    public RingBuffer(int slots, int capacity, int maxRecordLength) {
+        validatePowerOfTwo(slots, "Buffer size");
+        validatePowerOfTwo(capacity, "Ring capacity");
+        if (maxRecordLength > capacity / 2) {
+            throw new IllegalArgumentException("Max record length must not exceed half the ring capacity");
+        }
+        this.capacity = capacity;
+        this.maxRecordLength = maxRecordLength;
+        this.mask = slots - 1;
+        this.positions = new long[slots];
+        this.lengths = new int[slots];
+        this.timestamps = new long[slots];
+        this.versions = new AtomicLongArray(slots);
+        this.slab = ByteBuffer.allocateDirect(capacity);
+        this.writeView = slab.duplicate();
+        pretouch();
+    }
+
+    private static void validatePowerOfTwo(int size, String name) {
+        if (size <= 0 || (size & (size - 1)) != 0) {
+            throw new IllegalArgumentException(name + " must be power-of-two");
+        }
+    }
+
+    //-- Fault every page in up front so the first lap of the ring does not pay for it
+    private void pretouch() {
+        for (int i = 0; i < capacity; i += PAGE_SIZE) {
+            slab.put(i, (byte) 0);
+        }
+    }
+
+    private static long writingVersion(long sequence) {
+        return (sequence << 1) + 1;
+    }
+
+    private static long publishedVersion(long sequence) {
+        return (sequence << 1) + 2;
+    }
+
+    public void write(long sequence, ByteBuffer src) {
+        write(sequence, src, 0);
+    }
+
+    /**
+     * Copies the remaining bytes of {@code src} into the slot of {@code sequence} and stamps it with
+     * the given timestamp. The position of {@code src} is advanced to its limit.
+     * Must only be called from the writer thread.
+     */
+    public void write(long sequence, ByteBuffer src, long timestamp) {
+        int length = src.remaining();
+        int offset = (int) (writePosition & (capacity - 1));
+        if (offset + length > capacity) {
+            //-- Not enough room before the end of the slab, start over from the beginning
+            writePosition += capacity - offset;
+            offset = 0;
+        }
+        int slot = (int) (sequence & mask);
+
+        //-- Announce the slot and the bytes about to be overwritten before touching either
+        claimedPosition.lazySet(writePosition + length);
+        versions.lazySet(slot, writingVersion(sequence));
+        MemoryFences.storeFence();
+
+        writeView.clear();
+        writeView.position(offset);
+        writeView.put(src);
+        positions[slot] = writePosition;
+        lengths[slot] = length;
+        timestamps[slot] = timestamp;
+        writePosition += length;
+
+        versions.lazySet(slot, publishedVersion(sequence));
+    }
+
+    //-- View of the slab for one reader to copy records out with, must not be shared between threads
+    public ByteBuffer newReadView() {
+        return slab.duplicate();
+    }
+
+    public int getDataLength(long sequence) {
+        return lengths[(int) (sequence & mask)];
+    }
+
+    /**
+     * Copies the record of the given sequence into dst through the reader's own view and returns its
+     * length, or -1 when the record has already been overwritten or was overwritten while being copied.
+     * <p>
+     * The position and length are read without synchronisation, so when the writer reuses the slot
+     * meanwhile they may not belong together. They are bounded before the copy, whatever they are the
+     * copy stays within the slab and dst, and the validation afterwards reports the record as lost.
+     */
+    public int getData(long sequence, byte[] dst, ByteBuffer readView) {
+        int slot = (int) (sequence & mask);
+        long version = versions.get(slot);
+        if (version != publishedVersion(sequence)) {
+            return -1;
+        }
+
+        long position = positions[slot];
+        int length = lengths[slot];
+        int offset = (int) (position & (capacity - 1));
+        if (length < 0 || length > dst.length || offset + length > capacity) {
+            return -1;
+        }
+        readView.limit(offset + length).position(offset);
+        readView.get(dst, 0, length);
+
+        //-- Validate the copy, neither the slot nor its bytes may have been reused meanwhile
+        MemoryFences.loadFence();
+        if (versions.get(slot) != version || claimedPosition.get() - position > capacity) {
+            return -1;
+        }
+        return length;
+    }
+
+    //-- Timestamp the record of the given sequence was written with, or -1 when it has been overwritten
+    public long getTimestamp(long sequence) {
+        int slot = (int) (sequence & mask);
+        long version = versions.get(slot);
+        if (version != publishedVersion(sequence)) {
+            return -1;
+        }
+        long timestamp = timestamps[slot];
+        MemoryFences.loadFence();
+        return versions.get(slot) == version ? timestamp : -1;
+    }
+
+    public int getMaxRecordLength() {
+        return maxRecordLength;
+    }
+
+    public void reset() {
+        Arrays.fill(lengths, 0);
+        Arrays.fill(positions, 0);
+        for (int i = 0; i < versions.length(); i++) {
+            versions.set(i, 0);
+        }
+        claimedPosition.set(0);
+        writePosition = 0;
+    }
+}
@@ -1,18 +1,37 @@
 package com.jp.markethub.common;
 
-public class Sequencer {
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
-    private volatile long sequence = 0;
+//-- Cache line padding either side of the value so no other hot field shares its line
+abstract class LhsPadding {
+    protected long p1, p2, p3, p4, p5, p6, p7;
+}
+
+abstract class Value extends LhsPadding {
+    protected volatile long sequence;
+}
+
+abstract class RhsPadding extends Value {
+    protected long p9, p10, p11, p12, p13, p14, p15;
+}
+
+/**
+ * Sequence of a ring with exactly one writer thread. The writer publishes with a lazySet
+ * (store-release), readers observe it with a plain volatile read, no monitor is involved.
+ */
+public class Sequencer extends RhsPadding {
+    private static final AtomicLongFieldUpdater<Value> SEQUENCE = AtomicLongFieldUpdater.newUpdater(Value.class, "sequence");
 
     public long get() {
         return sequence;
     }
 
-    public synchronized void increment() {
-        sequence++;
+    //-- Must only be called from the single writer thread
+    public void increment() {
+        SEQUENCE.lazySet(this, sequence + 1);
     }
 
-    public synchronized void set(long value) {
-        sequence = value;
+    public void set(long value) {
+        SEQUENCE.set(this, value);
     }
-}
\ No newline at end of file
+}
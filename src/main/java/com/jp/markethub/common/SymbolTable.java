@@ -0,0 +1,161 @@
+package com.jp.markethub.common;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Interns instrument symbols into dense int ids starting at 1, {@link #NO_SYMBOL} is never handed out.
+ * <p>
+ * Lookups are lock free and allocation free, so every producer and feature thread can share one table.
+ * Only the first sighting of a symbol takes the lock, the symbol bytes are stored before the id is
+ * published with a store-release, so a reader that finds the id always finds the symbol too.
+ */
+public class SymbolTable {
+    public static final int NO_SYMBOL = 0;
+
+    private static final class Table {
+        final AtomicIntegerArray ids;
+        final byte[][] keys;
+        final int mask;
+
+        Table(int capacity) {
+            ids = new AtomicIntegerArray(capacity);
+            keys = new byte[capacity][];
+            mask = capacity - 1;
+        }
+    }
+
+    private volatile Table table = new Table(1024);
+    private volatile byte[][] symbols = new byte[512][];
+    private int count;
+
+    public int getOrAdd(byte[] src, int start, int end) {
+        int id = lookup(src, start, end);
+        return id != NO_SYMBOL ? id : add(Arrays.copyOfRange(src, start, end));
+    }
+
+    public int getOrAdd(ByteBuffer src, int start, int end) {
+        int id = lookup(src, start, end);
+        if (id != NO_SYMBOL) {
+            return id;
+        }
+        byte[] key = new byte[end - start];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = src.get(start + i);
+        }
+        return add(key);
+    }
+
+    public int lookup(byte[] src, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + src[i];
+        }
+        Table t = table;
+        for (int slot = mix(hash) & t.mask; ; slot = (slot + 1) & t.mask) {
+            int id = t.ids.get(slot);
+            if (id == NO_SYMBOL || matches(t.keys[slot], src, start, end)) {
+                return id;
+            }
+        }
+    }
+
+    public int lookup(ByteBuffer src, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + src.get(i);
+        }
+        Table t = table;
+        for (int slot = mix(hash) & t.mask; ; slot = (slot + 1) & t.mask) {
+            int id = t.ids.get(slot);
+            if (id == NO_SYMBOL || matches(t.keys[slot], src, start, end)) {
+                return id;
+            }
+        }
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(byte[] key, byte[] src, int start, int end) {
+        if (key.length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != src[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(byte[] key, ByteBuffer src, int start, int end) {
+        if (key.length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != src.get(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private synchronized int add(byte[] key) {
+        //-- Another thread may have added it since our lookup
+        int existing = lookup(key, 0, key.length);
+        if (existing != NO_SYMBOL) {
+            return existing;
+        }
+
+        int id = ++count;
+        if (id == symbols.length) {
+            symbols = Arrays.copyOf(symbols, symbols.length * 2);
+        }
+        symbols[id] = key;
+
+        //-- Keep the table at most half full, a grown table is filled completely before it is published
+        Table t = table;
+        if (count * 2 > t.keys.length) {
+            Table grown = new Table(t.keys.length * 2);
+            for (int i = 1; i < id; i++) {
+                insert(grown, symbols[i], i);
+            }
+            insert(grown, key, id);
+            table = grown;
+        } else {
+            insert(t, key, id);
+        }
+        return id;
+    }
+
+    private static void insert(Table t, byte[] key, int id) {
+        int hash = 0;
+        for (byte b : key) {
+            hash = 31 * hash + b;
+        }
+        int slot = mix(hash) & t.mask;
+        while (t.ids.get(slot) != NO_SYMBOL) {
+            slot = (slot + 1) & t.mask;
+        }
+        t.keys[slot] = key;
+        t.ids.lazySet(slot, id);
+    }
+
+    //-- ASCII bytes of the symbol, must not be modified
+    public byte[] getSymbolBytes(int id) {
+        return symbols[id];
+    }
+
+    public String getSymbol(int id) {
+        byte[] symbol = symbols[id];
+        return symbol == null ? null : new String(symbol, StandardCharsets.US_ASCII);
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+}
@@ -0,0 +1,56 @@
+package com.jp.markethub.common.thread;
+
+import com.jp.markethub.log.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Pins the calling thread to a set of CPUs on Linux. The JDK has no API for it, so the native id of the
+ * thread is read from {@code /proc/thread-self} and handed to {@code taskset}, which is why a thread can
+ * only pin itself. Anywhere else, or when taskset fails, the thread keeps running unpinned.
+ */
+final class CpuAffinity {
+    private static final Logger logger = Logger.getInstance();
+    private static final boolean LINUX = System.getProperty("os.name", "").startsWith("Linux");
+
+    private CpuAffinity() {
+    }
+
+    static boolean pinCurrentThread(String cpus) {
+        if (!LINUX) {
+            logger.error(CpuAffinity.class, "Cannot pin {} to CPUs {} outside of Linux", Thread.currentThread().getName(), cpus);
+            return false;
+        }
+        try {
+            //-- Resolves to <pid>/task/<tid>
+            Path thread = Files.readSymbolicLink(Paths.get("/proc/thread-self"));
+            String tid = thread.getFileName().toString();
+            Process taskset = new ProcessBuilder("taskset", "-p", "-c", cpus, tid).redirectErrorStream(true).start();
+            drain(taskset);
+            if (taskset.waitFor() != 0) {
+                logger.error(CpuAffinity.class, "taskset could not pin {} to CPUs {}", Thread.currentThread().getName(), cpus);
+                return false;
+            }
+        } catch (IOException e) {
+            logger.error(CpuAffinity.class, "Cannot pin {} to CPUs {}: {}", Thread.currentThread().getName(), cpus, e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug(CpuAffinity.class, "Pinned " + Thread.currentThread().getName() + " to CPUs " + cpus);
+        }
+        return true;
+    }
+
+    private static void drain(Process process) throws IOException {
+        byte[] discard = new byte[256];
+        while (process.getInputStream().read(discard) != -1) {
+            //-- taskset reports the old and new affinity, nobody needs it
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.jp.markethub.common.thread;
+
+/**
+ * Creates the threads of client sessions. This is the Java 8 version, a small stack daemon platform
+ * thread per session, the multi-release jar replaces it with a virtual thread on Java 21.
+ */
+final class SessionThreads {
+    private static final long STACK_SIZE = 256 * 1024;
+
+    private SessionThreads() {
+    }
+
+    static Thread newThread(String name, Runnable task) {
+        Thread thread = new Thread(null, task, name, STACK_SIZE);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    static boolean isVirtual() {
+        return false;
+    }
+}
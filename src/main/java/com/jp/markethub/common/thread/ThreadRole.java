@@ -0,0 +1,17 @@
+package com.jp.markethub.common.thread;
+
+//-- What a thread of the hub does, every role can be pinned to a CPU set of its own
+public enum ThreadRole {
+    //-- Reads producer sockets, a busy poll thread per producer or the ingest reactor threads
+    INGEST,
+    //-- Drains the producer rings of a port and publishes to its transport, one thread per port
+    FEATURE,
+    //-- Writes the messages of a sharded port to its share of the clients
+    FAN_OUT,
+    //-- Accepts consumer connections and reads their subscriptions
+    ACCEPTOR,
+    //-- Appends producer rings to the journal and serves replays
+    JOURNAL,
+    //-- Everything off the live path, metrics endpoint and multicast retransmits
+    SERVICE
+}
@@ -0,0 +1,107 @@
+package com.jp.markethub.common.thread;
+
+import com.jp.markethub.config.MarketHubConfig;
+import com.jp.markethub.log.Logger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates every thread of a hub. Each one is dedicated to a single {@link ThreadRole}, named after what
+ * it serves and, when the role has a CPU set configured, pins itself to it before running anything.
+ * Nothing of the hub runs on a pool, so a spinning feature can never hold on to a thread the acceptor
+ * or another feature is waiting for, however few cores the box has.
+ */
+public class ThreadTopology {
+    private final Logger logger = Logger.getInstance();
+    private final MarketHubConfig config;
+    //-- Threads still running and their role
+    private final Map<Thread, ThreadRole> threads = new ConcurrentHashMap<>();
+
+    public ThreadTopology(MarketHubConfig config) {
+        this.config = config;
+    }
+
+    public Thread start(ThreadRole role, String name, Runnable task) {
+        Thread thread = newThread(role, name, task);
+        thread.start();
+        return thread;
+    }
+
+    //-- For threads handed to an executor, the caller starts it
+    public Thread newThread(ThreadRole role, String name, Runnable task) {
+        String cpus = config.getCpuAffinity(role);
+        Thread thread = new Thread(() -> {
+            try {
+                if (cpus != null) {
+                    CpuAffinity.pinCurrentThread(cpus);
+                }
+                task.run();
+            } finally {
+                threads.remove(Thread.currentThread());
+            }
+        }, name);
+        threads.put(thread, role);
+        if (logger.isDebugEnabled()) {
+            logger.debug(ThreadTopology.class, "Created " + role + " thread " + name + (cpus == null ? "" : " on CPUs " + cpus));
+        }
+        return thread;
+    }
+
+    /**
+     * Starts the thread of a client session, virtual on Java 21. It is neither pinned nor tracked, a
+     * session thread holds no core of its own and ends as soon as its client goes.
+     */
+    public Thread startSession(String name, Runnable task) {
+        Thread thread = SessionThreads.newThread(name, task);
+        thread.start();
+        return thread;
+    }
+
+    public boolean hasVirtualSessions() {
+        return SessionThreads.isVirtual();
+    }
+
+    //-- Interrupts the running threads of the given roles and waits up to the timeout for all of them to finish
+    public void interrupt(long timeout, TimeUnit unit, ThreadRole... roles) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Map.Entry<Thread, ThreadRole> entry : threads.entrySet()) {
+            if (contains(roles, entry.getValue())) {
+                entry.getKey().interrupt();
+            }
+        }
+        for (Map.Entry<Thread, ThreadRole> entry : threads.entrySet()) {
+            if (!contains(roles, entry.getValue())) continue;
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                break;
+            }
+            try {
+                entry.getKey().join(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static boolean contains(ThreadRole[] roles, ThreadRole role) {
+        for (ThreadRole candidate : roles) {
+            if (candidate == role) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getThreadCount(ThreadRole role) {
+        int count = 0;
+        for (ThreadRole running : threads.values()) {
+            if (running == role) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
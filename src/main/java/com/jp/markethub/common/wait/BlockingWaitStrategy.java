@@ -0,0 +1,54 @@
+package com.jp.markethub.common.wait;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sleeps on a condition until a producer signals a publish. Producers only take the lock when
+ * the reader is actually asleep, so a busy reader costs them a single volatile write.
+ */
+public class BlockingWaitStrategy implements WaitStrategy {
+    //-- Upper bound on a sleep, so the reader still gets to run its periodic housekeeping
+    private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+    private volatile boolean waiting;
+    private volatile boolean signalled;
+
+    @Override
+    public void idle(int idleCount) {
+        lock.lock();
+        try {
+            waiting = true;
+            if (!signalled) {
+                published.awaitNanos(MAX_WAIT_NANOS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            waiting = false;
+            signalled = false;
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void signal() {
+        signalled = true;
+        if (waiting) {
+            lock.lock();
+            try {
+                published.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public boolean isBlocking() {
+        return true;
+    }
+}
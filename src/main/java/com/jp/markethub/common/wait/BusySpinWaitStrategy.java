@@ -0,0 +1,9 @@
+package com.jp.markethub.common.wait;
+
+public class BusySpinWaitStrategy implements WaitStrategy {
+
+    @Override
+    public void idle(int idleCount) {
+        //-- Go straight back to polling the ring
+    }
+}
@@ -0,0 +1,25 @@
+package com.jp.markethub.common.wait;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+public class ProgressiveParkWaitStrategy implements WaitStrategy {
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 200;
+    private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Override
+    public void idle(int idleCount) {
+        if (idleCount <= SPIN_TRIES) {
+            return;
+        }
+        if (idleCount <= YIELD_TRIES) {
+            Thread.yield();
+            return;
+        }
+        //-- Double the park time on every idle pass until it reaches the cap
+        int doublings = Math.min(idleCount - YIELD_TRIES, 20);
+        LockSupport.parkNanos(Math.min(MIN_PARK_NANOS << doublings, MAX_PARK_NANOS));
+    }
+}
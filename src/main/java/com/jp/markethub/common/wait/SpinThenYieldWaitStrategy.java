@@ -0,0 +1,12 @@
+package com.jp.markethub.common.wait;
+
+public class SpinThenYieldWaitStrategy implements WaitStrategy {
+    private static final int SPIN_TRIES = 100;
+
+    @Override
+    public void idle(int idleCount) {
+        if (idleCount > SPIN_TRIES) {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.jp.markethub.common.wait;
+
+/**
+ * Decides what a ring reader does when a pass over its producers found nothing new,
+ * trading wake up latency for CPU.
+ */
+public interface WaitStrategy {
+
+    //-- idleCount is the number of consecutive passes that found no data, starting at 1
+    void idle(int idleCount);
+
+    //-- Invoked by producers after publishing, only strategies that block need to act on it
+    default void signal() {
+    }
+
+    //-- Blocking strategies must be signalled by every producer they read from
+    default boolean isBlocking() {
+        return false;
+    }
+}
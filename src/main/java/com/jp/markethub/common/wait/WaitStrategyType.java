@@ -0,0 +1,31 @@
+package com.jp.markethub.common.wait;
+
+public enum WaitStrategyType {
+    //-- Lowest latency, permanently burns a core
+    BUSY_SPIN,
+    //-- Spins for a short while then yields the core to other runnable threads
+    SPIN_THEN_YIELD,
+    //-- Spins, yields then parks for progressively longer up to a millisecond
+    PROGRESSIVE_PARK,
+    //-- Sleeps until a producer publishes, costs a wake up on every burst
+    BLOCKING;
+
+    //-- A spinning reader polls again right away, the others may sleep well past any deadline
+    public boolean isSpinning() {
+        return this == BUSY_SPIN || this == SPIN_THEN_YIELD;
+    }
+
+    //-- Strategies keep per thread state, every reader gets its own instance
+    public WaitStrategy create() {
+        switch (this) {
+            case SPIN_THEN_YIELD:
+                return new SpinThenYieldWaitStrategy();
+            case PROGRESSIVE_PARK:
+                return new ProgressiveParkWaitStrategy();
+            case BLOCKING:
+                return new BlockingWaitStrategy();
+            default:
+                return new BusySpinWaitStrategy();
+        }
+    }
+}
@@ -1,8 +1,402 @@
 package com.jp.markethub.config;
 
+import com.jp.markethub.common.thread.ThreadRole;
+import com.jp.markethub.common.wait.WaitStrategyType;
+import com.jp.markethub.consumer.OverrunPolicy;
+import com.jp.markethub.consumer.feature.OutputEncoding;
+import com.jp.markethub.producer.IngestMode;
+import com.jp.markethub.producer.ProducerType;
+import com.jp.markethub.transport.OverflowPolicy;
+import com.jp.markethub.transport.PublishMode;
+import com.jp.markethub.transport.SessionMode;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
 public class MarketHubConfig {
+    private static final Pattern CPU_LIST = Pattern.compile("\\d+(-\\d+)?(,\\d+(-\\d+)?)*");
+
+    private final Map<ProducerType, IngestMode> ingestModes = new EnumMap<>(ProducerType.class);
+    private int ingestReactorThreads = 1;
+    private boolean typedIngest;
+    private boolean keyedFeeds;
+    private final Map<Integer, WaitStrategyType> waitStrategies = new HashMap<>();
+    private WaitStrategyType defaultWaitStrategy = WaitStrategyType.BUSY_SPIN;
+    private WaitStrategyType ingestWaitStrategy = WaitStrategyType.BUSY_SPIN;
+    private final Map<Integer, Boolean> conflateBatches = new HashMap<>();
+    private final Map<Integer, OverflowPolicy> overflowPolicies = new HashMap<>();
+    private final Map<Integer, OverrunPolicy> overrunPolicies = new HashMap<>();
+    private final Map<Integer, PublishMode> publishModes = new HashMap<>();
+    private final Map<Integer, Long> coalesceDelays = new HashMap<>();
+    private final Map<Integer, OutputEncoding> outputEncodings = new HashMap<>();
+    private final Map<Integer, Integer> fanOutShards = new HashMap<>();
+    private final Map<Integer, SessionMode> sessionModes = new HashMap<>();
+    private int binaryPort = 10001;
+    private String multicastGroup;
+    private int multicastPort = 10100;
+    private String multicastInterface = "lo";
+    private int retransmitPort = 10101;
+    private String sharedMemoryFile;
+    private int sharedMemoryPort = 10200;
+    private String journalDirectory;
+    private int replayPort = 10300;
+    private boolean metricsEnabled;
+    private String logFile;
+    private int metricsPort = 10400;
+    private final Map<ThreadRole, String> cpuAffinities = new EnumMap<>(ThreadRole.class);
 
     public int getBufferSize() {
         return (int) Math.pow(2, 14);
     }
+
+    //-- Size in bytes of the off-heap slab holding the messages of each producer ring
+    public int getRingCapacity() {
+        return (int) Math.pow(2, 22);
+    }
+
+    public int getReadBufferSize() {
+        return (int) Math.pow(2, 16);
+    }
+
+    //-- Producers default to the shared ingest reactor, hot feeds may opt in to a dedicated busy poll thread
+    public IngestMode getIngestMode(ProducerType type) {
+        IngestMode mode = ingestModes.get(type);
+        return mode == null ? IngestMode.REACTOR : mode;
+    }
+
+    public void setIngestMode(ProducerType type, IngestMode mode) {
+        ingestModes.put(type, mode);
+    }
+
+    public int getIngestReactorThreads() {
+        return ingestReactorThreads;
+    }
+
+    public void setIngestReactorThreads(int ingestReactorThreads) {
+        if (ingestReactorThreads < 1) {
+            throw new IllegalArgumentException("Ingest reactor needs at least one thread");
+        }
+        this.ingestReactorThreads = ingestReactorThreads;
+    }
+
+    //-- Decode prices once on ingest into numeric columns that features can read instead of the text
+    public boolean isTypedIngest() {
+        return typedIngest;
+    }
+
+    public void setTypedIngest(boolean typedIngest) {
+        this.typedIngest = typedIngest;
+    }
+
+    //-- When set the leading field of every producer message is the instrument symbol instead of a SequenceNo
+    public boolean isKeyedFeeds() {
+        return keyedFeeds;
+    }
+
+    public void setKeyedFeeds(boolean keyedFeeds) {
+        this.keyedFeeds = keyedFeeds;
+    }
+
+    //-- Instruments a feature sizes its state for up front, it grows beyond that on demand
+    public int getInstrumentCapacity() {
+        return (int) Math.pow(2, 10);
+    }
+
+    //-- Wait strategy of the feature exposed on the given port, non critical ports can give up latency for CPU
+    public WaitStrategyType getWaitStrategy(int port) {
+        WaitStrategyType type = waitStrategies.get(port);
+        return type == null ? defaultWaitStrategy : type;
+    }
+
+    public void setWaitStrategy(int port, WaitStrategyType type) {
+        waitStrategies.put(port, type);
+    }
+
+    public void setDefaultWaitStrategy(WaitStrategyType type) {
+        this.defaultWaitStrategy = type;
+    }
+
+    //-- Used by producers in BUSY_POLL mode when a read returns nothing
+    public WaitStrategyType getIngestWaitStrategy() {
+        return ingestWaitStrategy;
+    }
+
+    public void setIngestWaitStrategy(WaitStrategyType type) {
+        if (type == WaitStrategyType.BLOCKING) {
+            throw new IllegalArgumentException("Busy poll ingest cannot block, use the ingest reactor instead");
+        }
+        this.ingestWaitStrategy = type;
+    }
+
+    //-- When enabled the feature on the given port publishes once per drained batch instead of once per update
+    public boolean isConflateBatches(int port) {
+        Boolean conflate = conflateBatches.get(port);
+        return conflate != null && conflate;
+    }
+
+    public void setConflateBatches(int port, boolean conflate) {
+        conflateBatches.put(port, conflate);
+    }
+
+    //-- What happens to messages for a client on the given port whose socket is backed up
+    public OverflowPolicy getOverflowPolicy(int port) {
+        OverflowPolicy policy = overflowPolicies.get(port);
+        return policy == null ? OverflowPolicy.DISCONNECT : policy;
+    }
+
+    //-- Conflation keeps the latest message of every instrument, a coalesced batch mixes them
+    public void setOverflowPolicy(int port, OverflowPolicy policy) {
+        if (policy == OverflowPolicy.CONFLATE && getPublishMode(port) == PublishMode.COALESCE) {
+            throw new IllegalArgumentException("Coalesced port " + port + " cannot conflate per instrument");
+        }
+        overflowPolicies.put(port, policy);
+    }
+
+    //-- Features resume from the oldest message still in the ring when a producer laps them
+    public OverrunPolicy getOverrunPolicy(int port) {
+        OverrunPolicy policy = overrunPolicies.get(port);
+        return policy == null ? OverrunPolicy.SKIP_TO_OLDEST : policy;
+    }
+
+    public void setOverrunPolicy(int port, OverrunPolicy policy) {
+        overrunPolicies.put(port, policy);
+    }
+
+    //-- Threads writing to the clients of the port, with one the feature thread writes to every client itself
+    public int getFanOutShards(int port) {
+        Integer shards = fanOutShards.get(port);
+        return shards == null ? 1 : shards;
+    }
+
+    public void setFanOutShards(int port, int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("Port " + port + " needs at least one fan-out shard");
+        }
+        fanOutShards.put(port, shards);
+    }
+
+    //-- How the clients of a port are written to, a thread per client port does not use fan-out shards
+    public SessionMode getSessionMode(int port) {
+        SessionMode mode = sessionModes.get(port);
+        return mode == null ? SessionMode.NON_BLOCKING : mode;
+    }
+
+    public void setSessionMode(int port, SessionMode mode) {
+        sessionModes.put(port, mode);
+    }
+
+    //-- Bytes queued per client of a thread per client port, kept small as such ports hold many clients
+    public int getSessionQueueSize(int port) {
+        return (int) Math.pow(2, 13);
+    }
+
+    //-- Messages and bytes handed from a sharded feature to its shards before it waits for the slowest one
+    public int getFanOutHandoffSize() {
+        return (int) Math.pow(2, 12);
+    }
+
+    public int getFanOutHandoffCapacity() {
+        return (int) Math.pow(2, 21);
+    }
+
+    //-- Bytes queued per client while its socket is backed up, also bounds the size of a single message
+    public int getOutboundBufferSize(int port) {
+        return (int) Math.pow(2, 16);
+    }
+
+    public PublishMode getPublishMode(int port) {
+        PublishMode mode = publishModes.get(port);
+        return mode == null ? PublishMode.IMMEDIATE : mode;
+    }
+
+    public void setPublishMode(int port, PublishMode mode) {
+        if (mode == PublishMode.COALESCE && getOverflowPolicy(port) == OverflowPolicy.CONFLATE) {
+            throw new IllegalArgumentException("Conflating port " + port + " cannot coalesce");
+        }
+        publishModes.put(port, mode);
+    }
+
+    //-- Wire format of the feature on the port, the binary port always publishes BINARY
+    public OutputEncoding getOutputEncoding(int port) {
+        OutputEncoding encoding = outputEncodings.get(port);
+        if (encoding != null) {
+            return encoding;
+        }
+        return port == binaryPort ? OutputEncoding.BINARY : OutputEncoding.CSV;
+    }
+
+    public void setOutputEncoding(int port, OutputEncoding encoding) {
+        outputEncodings.put(port, encoding);
+    }
+
+    //-- Port the collated feed is served on in the fixed width binary encoding
+    public int getBinaryPort() {
+        return binaryPort;
+    }
+
+    public void setBinaryPort(int binaryPort) {
+        this.binaryPort = binaryPort;
+    }
+
+    //-- How long a coalesced message may wait for company, zero flushes at the end of every batch
+    public long getCoalesceDelayNanos(int port) {
+        Long delay = coalesceDelays.get(port);
+        return delay == null ? TimeUnit.MICROSECONDS.toNanos(20) : delay;
+    }
+
+    public void setCoalesceDelay(int port, long delay, TimeUnit unit) {
+        coalesceDelays.put(port, unit.toNanos(delay));
+    }
+
+    //-- Bytes packed into a single coalesced write, kept well below the outbound buffer size
+    public int getCoalesceBufferSize(int port) {
+        return (int) Math.pow(2, 13);
+    }
+
+    //-- Multicast group the collated feed is also published to, null keeps the multicast feed disabled
+    public String getMulticastGroup() {
+        return multicastGroup;
+    }
+
+    public void setMulticastGroup(String multicastGroup) {
+        this.multicastGroup = multicastGroup;
+    }
+
+    public int getMulticastPort() {
+        return multicastPort;
+    }
+
+    public void setMulticastPort(int multicastPort) {
+        this.multicastPort = multicastPort;
+    }
+
+    public String getMulticastInterface() {
+        return multicastInterface;
+    }
+
+    public void setMulticastInterface(String multicastInterface) {
+        this.multicastInterface = multicastInterface;
+    }
+
+    public int getMulticastTtl() {
+        return 1;
+    }
+
+    public int getMaxDatagramLength() {
+        return (int) Math.pow(2, 11);
+    }
+
+    //-- Unicast port listeners send their gap fill requests to
+    public int getRetransmitPort() {
+        return retransmitPort;
+    }
+
+    public void setRetransmitPort(int retransmitPort) {
+        this.retransmitPort = retransmitPort;
+    }
+
+    //-- Number of datagrams kept for retransmission
+    public int getRetransmitBufferSize() {
+        return (int) Math.pow(2, 14);
+    }
+
+    public int getRetransmitBufferCapacity() {
+        return (int) Math.pow(2, 21);
+    }
+
+    //-- File the collated feed is also appended to for co-located consumers, null keeps it disabled
+    public String getSharedMemoryFile() {
+        return sharedMemoryFile;
+    }
+
+    public void setSharedMemoryFile(String sharedMemoryFile) {
+        this.sharedMemoryFile = sharedMemoryFile;
+    }
+
+    //-- Nothing listens on it, it only identifies the shared memory feed among the others
+    public int getSharedMemoryPort() {
+        return sharedMemoryPort;
+    }
+
+    public void setSharedMemoryPort(int sharedMemoryPort) {
+        this.sharedMemoryPort = sharedMemoryPort;
+    }
+
+    //-- Size in bytes of the record area of the shared memory ring
+    public int getSharedMemoryCapacity() {
+        return (int) Math.pow(2, 24);
+    }
+
+    //-- Directory every producer message is journaled to, null keeps the journal disabled
+    public String getJournalDirectory() {
+        return journalDirectory;
+    }
+
+    public void setJournalDirectory(String journalDirectory) {
+        this.journalDirectory = journalDirectory;
+    }
+
+    public int getJournalSegmentSize() {
+        return (int) Math.pow(2, 26);
+    }
+
+    //-- Every so many sequences a journal record is added to the sparse index
+    public int getJournalIndexInterval() {
+        return (int) Math.pow(2, 10);
+    }
+
+    //-- Port journal replays are requested on
+    public int getReplayPort() {
+        return replayPort;
+    }
+
+    public void setReplayPort(int replayPort) {
+        this.replayPort = replayPort;
+    }
+
+    //-- Stage latencies and throughput are only recorded when enabled, they are then served over JMX and HTTP
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    public void setMetricsEnabled(boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+    }
+
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    public void setMetricsPort(int metricsPort) {
+        this.metricsPort = metricsPort;
+    }
+
+    //-- When set the hub logs asynchronously to this file instead of to standard out on the logging thread
+    public String getLogFile() {
+        return logFile;
+    }
+
+    public void setLogFile(String logFile) {
+        this.logFile = logFile;
+    }
+
+    //-- Log entries the async ring holds before new ones are dropped
+    public int getLogRingCapacity() {
+        return (int) Math.pow(2, 14);
+    }
+
+    //-- CPUs the threads of a role are pinned to on Linux, as a taskset list such as "2,4-6", null leaves them unpinned
+    public String getCpuAffinity(ThreadRole role) {
+        return cpuAffinities.get(role);
+    }
+
+    public void setCpuAffinity(ThreadRole role, String cpus) {
+        if (cpus != null && !CPU_LIST.matcher(cpus).matches()) {
+            throw new IllegalArgumentException("Invalid CPU list " + cpus + " for " + role);
+        }
+        cpuAffinities.put(role, cpus);
+    }
 }
@@ -1,10 +1,14 @@
 package com.jp.markethub.consumer;
 
 import com.jp.markethub.MarketHub;
+import com.jp.markethub.common.SymbolTable;
 import com.jp.markethub.consumer.feature.BidOfferLastPrice;
 import com.jp.markethub.consumer.feature.FeatureContract;
+import com.jp.markethub.config.MarketHubConfig;
+import com.jp.markethub.transport.MulticastPublisher;
 import com.jp.markethub.transport.TcpPublisher;
 import com.jp.markethub.transport.TransportContract;
+import com.jp.markethub.transport.ipc.SharedMemoryPublisher;
 
 import java.util.HashMap;
 import java.util.*;
@@ -39,7 +43,31 @@ public class ConsumerFactory {
     }
 
     private void buildFeatureRegistry(MarketHub hub) {
-        featureRegistry.add(new BidOfferLastPrice(new TcpPublisher(hub, 10000)));
+        MarketHubConfig config = hub.getConfig();
+        int port = 10000;
+        featureRegistry.add(createBidOfferLastPrice(hub, new TcpPublisher(hub, port)));
+
+        //-- Same collated feed in fixed width binary for clients that would rather not parse text
+        featureRegistry.add(createBidOfferLastPrice(hub, new TcpPublisher(hub, config.getBinaryPort())));
+
+        //-- Same collated feed published once for any number of multicast listeners
+        if (config.getMulticastGroup() != null) {
+            featureRegistry.add(createBidOfferLastPrice(hub, new MulticastPublisher(config, hub.getThreads())));
+        }
+
+        //-- And appended to a memory-mapped ring for consumers running on the same box
+        if (config.getSharedMemoryFile() != null) {
+            featureRegistry.add(createBidOfferLastPrice(hub, new SharedMemoryPublisher(config)));
+        }
+    }
+
+    private static FeatureContract createBidOfferLastPrice(MarketHub hub, TransportContract transport) {
+        MarketHubConfig config = hub.getConfig();
+        int port = transport.getPort();
+        //-- Keyed feeds get a book per instrument
+        SymbolTable symbolTable = config.isKeyedFeeds() ? hub.getSymbolTable() : null;
+        return new BidOfferLastPrice(transport, config.isConflateBatches(port), config.getOutputEncoding(port),
+                symbolTable, config.getInstrumentCapacity());
     }
 
     public static FeatureContract getConsumer(int port) {
@@ -1,17 +1,28 @@
 package com.jp.markethub.consumer;
 
 import com.jp.markethub.MarketHub;
+import com.jp.markethub.common.MarketRecord;
 import com.jp.markethub.common.Sequencer;
+import com.jp.markethub.common.thread.ThreadRole;
+import com.jp.markethub.common.wait.WaitStrategy;
 import com.jp.markethub.consumer.feature.FeatureContract;
+import com.jp.markethub.consumer.feature.SnapshotWriter;
 import com.jp.markethub.log.Logger;
+import com.jp.markethub.metrics.HubMetrics;
+import com.jp.markethub.metrics.Stage;
 import com.jp.markethub.producer.Producer;
 import com.jp.markethub.producer.ProducerType;
+import com.jp.markethub.transport.ClientSession;
+import com.jp.markethub.transport.SubscriptionIndex;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
 import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -19,15 +30,28 @@ public class ConsumerManager implements Runnable {
     private final Logger logger = Logger.getInstance();
 
     private final MarketHub marketHub;
-    protected final List<SocketChannel> clients = new CopyOnWriteArrayList<>();
+    private final WaitStrategy waitStrategy;
+    private final OverrunPolicy overrunPolicy;
+    private final LagMonitor lagMonitor = new LagMonitor();
+    //-- Null unless metrics are enabled
+    private final HubMetrics metrics;
+    protected final List<ClientSession> clients = new CopyOnWriteArrayList<>();
+    private final SubscriptionIndex subscriptions = new SubscriptionIndex();
+    //-- Clients waiting for their snapshot before they join the live fan-out
+    private final Queue<ClientSession> joiningClients = new ConcurrentLinkedQueue<>();
+    private final SnapshotSink snapshotSink = new SnapshotSink();
 
     private volatile boolean running = true;
+    private volatile boolean failed;
     private EnumSet<ProducerType> interests;
     private FeatureContract feature;
     private AtomicBoolean isThreadStarted = new AtomicBoolean(false);
 
-    public ConsumerManager(MarketHub marketHub) {
+    public ConsumerManager(MarketHub marketHub, WaitStrategy waitStrategy, OverrunPolicy overrunPolicy) {
         this.marketHub = marketHub;
+        this.waitStrategy = waitStrategy;
+        this.overrunPolicy = overrunPolicy;
+        this.metrics = marketHub.getMetrics();
     }
 
     public void registerInterest(EnumSet<ProducerType> interests) {
@@ -40,67 +64,233 @@ public class ConsumerManager implements Runnable {
             logger.debug(getClass(), "Starting consumer thread " + this);
         }
         long[] lastSequence = new long[ProducerType.values().length];
+        byte[] data = new byte[marketHub.getConfig().getReadBufferSize()];
+        MarketRecord record = new MarketRecord();
+        Producer[] knownProducers = new Producer[ProducerType.values().length];
+        ByteBuffer[] readViews = new ByteBuffer[ProducerType.values().length];
+        int idleCount = 0;
 
-        while (running) {
+        while (running && !Thread.currentThread().isInterrupted()) {
+            if (!joiningClients.isEmpty()) {
+                admitJoiningClients();
+            }
+            boolean processed = false;
             for (ProducerType type : interests) {
                 Producer producer = marketHub.getProducer(type);
                 if (producer == null) continue;
 
+                //-- A blocking reader must be woken up by every producer it reads from
+                if (knownProducers[type.getSequenceId()] != producer) {
+                    knownProducers[type.getSequenceId()] = producer;
+                    readViews[type.getSequenceId()] = producer.newReadView();
+                    if (waitStrategy.isBlocking()) {
+                        producer.addBlockingReader(waitStrategy);
+                    }
+                }
+
                 //-- Collect the current and available Producer Sequence
                 Sequencer sequencer = producer.getSequencer();
                 long currentSeq = sequencer.get();
                 long lastSeq = lastSequence[type.getSequenceId()];
 
                 //-- If no data is available go to next producer
-                if (currentSeq <= lastSeq) continue;
+                if (currentSeq <= lastSeq) {
+                    lagMonitor.recordLag(type.getSequenceId(), 0);
+                    continue;
+                }
 
                 //-- If  there is data check the lag
-                long bufferSize = producer.getBufferSize();
                 long availableCount = currentSeq - lastSeq;
+                lagMonitor.recordLag(type.getSequenceId(), availableCount);
 
                 //-- Handle buffer wrap-around scenario
-                if (availableCount > bufferSize) {
-                    long newStart = Math.max(0, currentSeq - bufferSize + 1);
-                    if (logger.isDebugEnabled()) {
-                        logger.debug(getClass(), "Missed multiple data feeds, Jumping sequence bufferSize =[" + bufferSize + "] availableCount=[" + availableCount + "]" + newStart);
-                    }
-                    lastSeq = newStart - 1;
+                if (availableCount > producer.getBufferSize()) {
+                    lastSeq = onOverrun(producer, type, lastSeq, currentSeq);
+                    if (failed) break;
+                }
+
+                //-- Drain everything published so far in one go
+                if (feature.isTyped() && producer.isTyped()) {
+                    lastSequence[type.getSequenceId()] = drainTyped(producer, type, lastSeq, currentSeq, record);
+                } else {
+                    lastSequence[type.getSequenceId()] = drain(producer, type, lastSeq, currentSeq, data, readViews[type.getSequenceId()]);
                 }
+                processed = true;
+                if (failed) break;
+            }
+            if (failed) {
+                close();
+                return;
+            }
 
-                //-- Pick the data without any lock
-                long index = (int) (lastSeq & (bufferSize - 1));
-                byte[] data = producer.getData(index);
-                int length = producer.getDataLength(index);
+            //-- Let the feature fold the whole batch into a single publish if it wants to
+            if (processed) {
+                long batchNanos = metrics != null ? System.nanoTime() : 0;
+                feature.onEndOfBatch();
+                feature.getTcpPublisher().onEndOfBatch();
+                if (metrics != null) {
+                    metrics.record(Stage.BATCH_FLUSH, System.nanoTime() - batchNanos);
+                }
+            }
 
-                //-- Update consumer handler
-                if (length > 0) {
-                    if (logger.isDebugEnabled()) {
-                        logger.info(getClass(), "Consumer Manager sequence =[ " + lastSeq + "] for Producer = [ " + producer + "] index = [ " + index + " ] length =[ " + length + " ]  data =[ " + new String(data).trim() + " ] ");
-                    }
+            //-- Nothing new on any producer, back off as the configured strategy dictates
+            if (processed) {
+                idleCount = 0;
+            } else {
+                feature.getTcpPublisher().onIdle();
+                waitStrategy.idle(idleCount < Integer.MAX_VALUE ? ++idleCount : idleCount);
+            }
+        }
+    }
+
+
+    //-- Hands every sequence in [fromSeq, toSeq) to the feature and returns the next sequence to read
+    private long drain(Producer producer, ProducerType type, long fromSeq, long toSeq, byte[] data, ByteBuffer readView) {
+        for (long seq = fromSeq; seq < toSeq; seq++) {
+            //-- Pick the data without any lock, a record overwritten while being copied is discarded
+            int length = producer.getData(seq, data, readView);
+
+            //-- Update consumer handler
+            if (length > 0) {
+                if (logger.isDebugEnabled()) {
+                    logger.info(getClass(), "Consumer Manager sequence =[ " + seq + "] for Producer = [ " + producer + "] length =[ " + length + " ]  data =[ " + new String(data, 0, length) + " ] ");
+                }
+                if (metrics != null) {
+                    timedUpdate(producer.getIngestNanos(seq), data, length, type);
+                } else {
                     feature.onUpdate(data, length, type);
                 }
+            } else if (length < 0) {
+                //-- The producer has lapped us while we were reading
+                return onOverrun(producer, type, seq, producer.getSequencer().get());
+            }
+        }
+        return toSeq;
+    }
 
-                //-- store the last sequence
-                lastSequence[type.getSequenceId()] = lastSeq + 1;
+    //-- Same as drain for a typed feature, the decoded columns are read and nothing is parsed again
+    private long drainTyped(Producer producer, ProducerType type, long fromSeq, long toSeq, MarketRecord record) {
+        for (long seq = fromSeq; seq < toSeq; seq++) {
+            if (!producer.getRecord(seq, record)) {
+                return onOverrun(producer, type, seq, producer.getSequencer().get());
+            }
+            if (metrics != null) {
+                long dispatchNanos = System.nanoTime();
+                feature.onTypedUpdate(record, type);
+                metrics.record(Stage.DISPATCH, dispatchNanos - record.getIngestNanos());
+                metrics.record(Stage.PUBLISH, System.nanoTime() - dispatchNanos);
+            } else {
+                feature.onTypedUpdate(record, type);
             }
         }
+        return toSeq;
     }
 
+    //-- The ring stamps timed messages as they are published, -1 when the stamp was overwritten meanwhile
+    private void timedUpdate(long publishedNanos, byte[] data, int length, ProducerType type) {
+        long dispatchNanos = System.nanoTime();
+        feature.onUpdate(data, length, type);
+        if (publishedNanos >= 0) {
+            metrics.record(Stage.DISPATCH, dispatchNanos - publishedNanos);
+        }
+        metrics.record(Stage.PUBLISH, System.nanoTime() - dispatchNanos);
+    }
 
-    public void addClient(SocketChannel client) {
-        clients.add(client);
-        if (logger.isDebugEnabled()) {
-            logger.debug(getClass(), "New client connected [ " + client + " ]. Total clients: " + clients.size());
+    /**
+     * Applies the overrun policy once the producer has overwritten the message of sequence fromSeq before
+     * this feature got to it, and returns the sequence to resume from. The slot of currentSeq - bufferSize
+     * is the next one the producer overwrites, so the oldest message worth reading is the one after it.
+     */
+    private long onOverrun(Producer producer, ProducerType type, long fromSeq, long currentSeq) {
+        long resumeSeq;
+        switch (overrunPolicy) {
+            case SKIP_TO_LATEST:
+                resumeSeq = Math.max(fromSeq + 1, currentSeq - 1);
+                break;
+            case FAIL:
+                failed = true;
+                resumeSeq = currentSeq;
+                break;
+            default:
+                resumeSeq = Math.max(fromSeq + 1, currentSeq - producer.getBufferSize() + 1);
+        }
+        lagMonitor.recordOverrun(type.getSequenceId(), resumeSeq - fromSeq);
+        logger.error(getClass(), "{} producer lapped the feature on port {}, lost sequences {} to {}",
+                type, feature.getTcpPublisher().getPort(), fromSeq, resumeSeq - 1);
+        if (failed) {
+            logger.error(getClass(), "Stopping the feature on port {} as its overrun policy is {}", feature.getTcpPublisher().getPort(), overrunPolicy);
+        }
+        return resumeSeq;
+    }
+
+    /**
+     * Queues a new client, the publishing thread sends it the current state of the feature between two
+     * batches and only then adds it to the live clients, so it neither misses nor sees an update twice.
+     */
+    public void addClient(ClientSession client) {
+        subscriptions.add(client);
+        joiningClients.add(client);
+        waitStrategy.signal();
+    }
+
+    private void admitJoiningClients() {
+        //-- Whatever the transport still holds was published before the snapshots and must go out first
+        feature.getTcpPublisher().onBeforeAdmit();
+        ClientSession client;
+        while ((client = joiningClients.poll()) != null) {
+            snapshotSink.client = client;
+            snapshotSink.open = true;
+            feature.writeSnapshot(snapshotSink);
+            if (!snapshotSink.open) {
+                subscriptions.remove(client);
+                continue;
+            }
+            clients.add(client);
+            subscriptions.admit(client);
+            feature.getTcpPublisher().onClientAdmitted(client);
+            if (logger.isDebugEnabled()) {
+                logger.debug(getClass(), "New client connected [ " + client + " ]. Total clients: " + clients.size());
+            }
+        }
+        snapshotSink.client = null;
+    }
+
+    private final class SnapshotSink implements SnapshotWriter {
+        private ClientSession client;
+        private boolean open;
+
+        @Override
+        public void write(int symbolId, byte[] data, int length) {
+            if (open) {
+                open = feature.getTcpPublisher().send(client, symbolId, data, length);
+            }
         }
     }
 
     public void removeClient(SocketChannel channel) {
-        clients.remove(channel);
+        for (ClientSession client : clients) {
+            if (client.getChannel() == channel && clients.remove(client)) {
+                release(client);
+            }
+        }
+        //-- Gone before its snapshot, it must not be admitted later
+        for (ClientSession client : joiningClients) {
+            if (client.getChannel() == channel && joiningClients.remove(client)) {
+                release(client);
+            }
+        }
         if (logger.isDebugEnabled()) {
             logger.debug(getClass(), "Client removed. Total clients: " + getTotalClients());
         }
     }
 
+    private void release(ClientSession client) {
+        subscriptions.remove(client);
+        feature.getTcpPublisher().onClientRemoved(client);
+        marketHub.onClientRemoved(client.getChannel());
+    }
+
+    //-- Live clients only, a client still waiting for its snapshot is not counted yet
     public int getTotalClients() {
         return clients.size();
     }
@@ -114,12 +304,19 @@ public class ConsumerManager implements Runnable {
             if (logger.isDebugEnabled()) {
                 logger.info(getClass(), "Clients = " + clients);
             }
-            marketHub.submit(this);
+            marketHub.getThreads().start(ThreadRole.FEATURE, "feature-" + feature.getTcpPublisher().getPort(), this);
         }
     }
 
     public void close() {
-        for (SocketChannel client : clients) {
+        running = false;
+        waitStrategy.signal();
+        if (feature != null) {
+            feature.getTcpPublisher().close();
+        }
+        clients.addAll(joiningClients);
+        joiningClients.clear();
+        for (ClientSession client : clients) {
             try {
                 client.close();
             } catch (IOException e) {
@@ -128,7 +325,20 @@ public class ConsumerManager implements Runnable {
         }
     }
 
-    public Iterator<SocketChannel> getClients() {
+    public LagMonitor getLagMonitor() {
+        return lagMonitor;
+    }
+
+    //-- True once the FAIL overrun policy has stopped this feature
+    public boolean isFailed() {
+        return failed;
+    }
+
+    public SubscriptionIndex getSubscriptions() {
+        return subscriptions;
+    }
+
+    public Iterator<ClientSession> getClients() {
         return clients.iterator();
     }
 }
@@ -0,0 +1,76 @@
+package com.jp.markethub.consumer;
+
+import com.jp.markethub.producer.ProducerType;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lag gauges of one feature, one slot per producer it reads from.
+ * <p>
+ * Only the feature thread updates them, with lazySet, so monitoring can read them from any thread
+ * without ever slowing the feature down. The lag is the number of sequences the feature was behind
+ * the producer when it last looked, an overrun is a lap of the ring and the messages it skipped are
+ * lost by the hub itself, unlike a gap in the SequenceNo of the feed counted by the producer.
+ */
+public class LagMonitor {
+
+    private final AtomicLongArray lag = new AtomicLongArray(ProducerType.values().length);
+    private final AtomicLongArray maxLag = new AtomicLongArray(ProducerType.values().length);
+    private final AtomicLongArray overruns = new AtomicLongArray(ProducerType.values().length);
+    private final AtomicLongArray lostMessages = new AtomicLongArray(ProducerType.values().length);
+
+    void recordLag(int producer, long sequences) {
+        if (lag.get(producer) != sequences) {
+            lag.lazySet(producer, sequences);
+        }
+        if (sequences > maxLag.get(producer)) {
+            maxLag.lazySet(producer, sequences);
+        }
+    }
+
+    void recordOverrun(int producer, long lost) {
+        overruns.lazySet(producer, overruns.get(producer) + 1);
+        lostMessages.lazySet(producer, lostMessages.get(producer) + lost);
+    }
+
+    public long getLag(ProducerType type) {
+        return lag.get(type.getSequenceId());
+    }
+
+    public long getMaxLag(ProducerType type) {
+        return maxLag.get(type.getSequenceId());
+    }
+
+    public long getOverruns(ProducerType type) {
+        return overruns.get(type.getSequenceId());
+    }
+
+    public long getLostMessages(ProducerType type) {
+        return lostMessages.get(type.getSequenceId());
+    }
+
+    //-- Feature wide figures across every producer
+    public long getMaxLag() {
+        long max = 0;
+        for (int i = 0; i < maxLag.length(); i++) {
+            max = Math.max(max, maxLag.get(i));
+        }
+        return max;
+    }
+
+    public long getOverruns() {
+        return sum(overruns);
+    }
+
+    public long getLostMessages() {
+        return sum(lostMessages);
+    }
+
+    private static long sum(AtomicLongArray counters) {
+        long total = 0;
+        for (int i = 0; i < counters.length(); i++) {
+            total += counters.get(i);
+        }
+        return total;
+    }
+}
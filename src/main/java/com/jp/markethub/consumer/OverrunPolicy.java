@@ -0,0 +1,11 @@
+package com.jp.markethub.consumer;
+
+//-- What a feature does once a producer has lapped it and overwritten messages it had not read yet
+public enum OverrunPolicy {
+    //-- Resume from the oldest message still in the ring, losing as little as possible
+    SKIP_TO_OLDEST,
+    //-- Resume from the latest message, the backlog is stale anyway
+    SKIP_TO_LATEST,
+    //-- Stop the feature and disconnect its clients, a lost message is not acceptable on this port
+    FAIL
+}
@@ -1,5 +1,10 @@
 package com.jp.markethub.consumer.feature;
 
+import com.jp.markethub.common.BinaryCodec;
+import com.jp.markethub.common.FixedPoint;
+import com.jp.markethub.common.IntIntHashMap;
+import com.jp.markethub.common.MarketRecord;
+import com.jp.markethub.common.SymbolTable;
 import com.jp.markethub.log.Logger;
 import com.jp.markethub.producer.ProducerType;
 import com.jp.markethub.transport.TcpPublisher;
@@ -15,40 +20,179 @@ public class BidOfferLastPrice implements FeatureContract {
     private final Logger logger = Logger.getInstance();
 
     private final TransportContract transportContract;
-    private final ByteBuffer outputBuffer = ByteBuffer.allocateDirect(128);
-    private final byte[] digitBuffer = new byte[10];
+    //-- The message is built straight into the array handed to the transport, nothing is allocated per publish
+    private final byte[] output = new byte[256];
+    private final ByteBuffer outputBuffer = ByteBuffer.wrap(output);
+    private final byte[] digitBuffer = new byte[20];
+    private final OutputEncoding encoding;
 
+    //-- Keyed feeds carry the instrument as leading field, without a symbol table everything is one instrument
+    private final SymbolTable symbolTable;
+    private final IntIntHashMap instruments;
+    private int instrumentCount;
 
-    private final byte[] lastBid = new byte[MAX_FIELD_SIZE];
-    private int bidLength;
-    private final byte[] lastOffer = new byte[MAX_FIELD_SIZE];
-    private int offerLength;
-    private final byte[] lastPrice = new byte[MAX_FIELD_SIZE];
-    private int priceLength;
+    //-- Last values per instrument in flat arrays indexed by instrument, text fields take MAX_FIELD_SIZE bytes each
+    private int[] symbolIds;
+    private byte[] lastBids;
+    private int[] bidLengths;
+    private byte[] lastOffers;
+    private int[] offerLengths;
+    private byte[] lastPrices;
+    private int[] priceLengths;
 
-    private int sequence;
+    //-- Fixed point state, only kept up to date for the binary encoding
+    private long[] bids;
+    private long[] offers;
+    private long[] lasts;
+
+    private long sequence;
+
+    //-- When set a burst of updates is folded into a single publish of the latest state of every instrument touched
+    private final boolean conflateBatches;
+    private boolean[] pending;
+    private int[] pendingInstruments;
+    private int pendingCount;
 
     public BidOfferLastPrice(TransportContract transportContract) {
+        this(transportContract, false);
+    }
+
+    public BidOfferLastPrice(TransportContract transportContract, boolean conflateBatches) {
+        this(transportContract, conflateBatches, OutputEncoding.CSV);
+    }
+
+    public BidOfferLastPrice(TransportContract transportContract, boolean conflateBatches, OutputEncoding encoding) {
+        this(transportContract, conflateBatches, encoding, null, 1);
+    }
+
+    public BidOfferLastPrice(TransportContract transportContract, boolean conflateBatches, OutputEncoding encoding,
+                             SymbolTable symbolTable, int instrumentCapacity) {
         this.transportContract = transportContract;
+        this.conflateBatches = conflateBatches;
+        this.encoding = encoding;
+        this.symbolTable = symbolTable;
+        this.instruments = new IntIntHashMap(instrumentCapacity);
+        allocate(instrumentCapacity);
+        if (symbolTable == null) {
+            instrumentCount = 1;
+        }
+    }
+
+    private void allocate(int capacity) {
+        symbolIds = symbolIds == null ? new int[capacity] : Arrays.copyOf(symbolIds, capacity);
+        lastBids = lastBids == null ? new byte[capacity * MAX_FIELD_SIZE] : Arrays.copyOf(lastBids, capacity * MAX_FIELD_SIZE);
+        bidLengths = bidLengths == null ? new int[capacity] : Arrays.copyOf(bidLengths, capacity);
+        lastOffers = lastOffers == null ? new byte[capacity * MAX_FIELD_SIZE] : Arrays.copyOf(lastOffers, capacity * MAX_FIELD_SIZE);
+        offerLengths = offerLengths == null ? new int[capacity] : Arrays.copyOf(offerLengths, capacity);
+        lastPrices = lastPrices == null ? new byte[capacity * MAX_FIELD_SIZE] : Arrays.copyOf(lastPrices, capacity * MAX_FIELD_SIZE);
+        priceLengths = priceLengths == null ? new int[capacity] : Arrays.copyOf(priceLengths, capacity);
+        pending = pending == null ? new boolean[capacity] : Arrays.copyOf(pending, capacity);
+        pendingInstruments = pendingInstruments == null ? new int[capacity] : Arrays.copyOf(pendingInstruments, capacity);
+
+        int from = bids == null ? 0 : bids.length;
+        bids = bids == null ? new long[capacity] : Arrays.copyOf(bids, capacity);
+        offers = offers == null ? new long[capacity] : Arrays.copyOf(offers, capacity);
+        lasts = lasts == null ? new long[capacity] : Arrays.copyOf(lasts, capacity);
+        Arrays.fill(bids, from, capacity, FixedPoint.NULL);
+        Arrays.fill(offers, from, capacity, FixedPoint.NULL);
+        Arrays.fill(lasts, from, capacity, FixedPoint.NULL);
+    }
+
+    //-- Index of the state of the instrument, a new instrument is given the next free index
+    private int instrument(int symbolId) {
+        if (symbolTable == null) {
+            return 0;
+        }
+        int instrument = instruments.get(symbolId);
+        if (instrument != IntIntHashMap.MISSING) {
+            return instrument;
+        }
+        instrument = instrumentCount++;
+        if (instrument == symbolIds.length) {
+            allocate(symbolIds.length * 2);
+        }
+        symbolIds[instrument] = symbolId;
+        instruments.put(symbolId, instrument);
+        return instrument;
     }
 
     @Override
     public void onUpdate(byte[] data, int length, ProducerType type) {
-        try {
-            if (type == ProducerType.BIDOFFER) {
-                parseBidOffer(data, length);
-            } else if (type == ProducerType.LASTPRICE) {
-                parseLastPrice(data, length);
+        int instrument;
+        if (type == ProducerType.BIDOFFER) {
+            instrument = parseBidOffer(data, length);
+        } else if (type == ProducerType.LASTPRICE) {
+            instrument = parseLastPrice(data, length);
+        } else {
+            return;
+        }
+        if (instrument < 0) {
+            return;
+        }
+        if (encoding == OutputEncoding.BINARY) {
+            int field = instrument * MAX_FIELD_SIZE;
+            bids[instrument] = FixedPoint.parse(lastBids, field, field + bidLengths[instrument]);
+            offers[instrument] = FixedPoint.parse(lastOffers, field, field + offerLengths[instrument]);
+            lasts[instrument] = FixedPoint.parse(lastPrices, field, field + priceLengths[instrument]);
+        }
+        publish(instrument);
+    }
+
+    //-- The binary encoding needs no text, so it reads the prices the producer already decoded
+    @Override
+    public boolean isTyped() {
+        return encoding == OutputEncoding.BINARY;
+    }
+
+    @Override
+    public void onTypedUpdate(MarketRecord record, ProducerType type) {
+        int instrument = instrument(record.getSymbolId());
+        if (type == ProducerType.BIDOFFER) {
+            bids[instrument] = record.getBid();
+            offers[instrument] = record.getOffer();
+        } else if (type == ProducerType.LASTPRICE) {
+            lasts[instrument] = record.getLast();
+        }
+        publish(instrument);
+    }
+
+    private void publish(int instrument) {
+        if (conflateBatches) {
+            if (!pending[instrument]) {
+                pending[instrument] = true;
+                pendingInstruments[pendingCount++] = instrument;
             }
+            return;
+        }
+        buildOutputMessage(instrument, sequence++);
+        flushOutputBuffer(instrument);
+    }
 
-            buildOutputMessage();
-            flushOutputBuffer();
-        } finally {
-            Arrays.fill(data, (byte) 0);
+    @Override
+    public void onEndOfBatch() {
+        for (int i = 0; i < pendingCount; i++) {
+            int instrument = pendingInstruments[i];
+            pending[instrument] = false;
+            buildOutputMessage(instrument, sequence++);
+            flushOutputBuffer(instrument);
         }
+        pendingCount = 0;
     }
 
-    private void parseBidOffer(byte[] data, int length) {
+    //-- One message per instrument, all carrying the sequence of the last message published to everyone
+    @Override
+    public void writeSnapshot(SnapshotWriter writer) {
+        if (sequence == 0) {
+            return;
+        }
+        for (int instrument = 0; instrument < instrumentCount; instrument++) {
+            buildOutputMessage(instrument, sequence - 1);
+            writer.write(symbolTable != null ? symbolIds[instrument] : SymbolTable.NO_SYMBOL, output, outputBuffer.position());
+        }
+    }
+
+    //-- Returns the instrument updated, or -1 for a malformed message
+    private int parseBidOffer(byte[] data, int length) {
         int firstComma = -1;
         int secondComma = -1;
 
@@ -65,14 +209,16 @@ public class BidOfferLastPrice implements FeatureContract {
 
         if (secondComma == -1) {
             logger.error(getClass(), "Invalid BIDOFFER format");
-            return;
+            return -1;
         }
 
-        bidLength = copy(data, firstComma + 1, secondComma, lastBid);
-        offerLength = copy(data, secondComma + 1, length, lastOffer);
+        int instrument = instrument(data, firstComma);
+        bidLengths[instrument] = copy(data, firstComma + 1, secondComma, lastBids, instrument);
+        offerLengths[instrument] = copy(data, secondComma + 1, length, lastOffers, instrument);
+        return instrument;
     }
 
-    private void parseLastPrice(byte[] data, int length) {
+    private int parseLastPrice(byte[] data, int length) {
         int commaPos = -1;
         for (int i = 0; i < length; i++) {
             if (data[i] == ',') {
@@ -83,35 +229,52 @@ public class BidOfferLastPrice implements FeatureContract {
 
         if (commaPos == -1) {
             logger.error(getClass(), "Invalid LASTPRICE format");
-            return;
+            return -1;
         }
 
-        priceLength = copy(data, commaPos + 1, length, lastPrice);
+        int instrument = instrument(data, commaPos);
+        priceLengths[instrument] = copy(data, commaPos + 1, length, lastPrices, instrument);
+        return instrument;
+    }
+
+    private int instrument(byte[] data, int keyEnd) {
+        return symbolTable == null ? 0 : instrument(symbolTable.getOrAdd(data, 0, keyEnd));
     }
 
-    private int copy(byte[] src, int start, int end, byte[] dest) {
+    private int copy(byte[] src, int start, int end, byte[] dest, int instrument) {
         int length = end - start;
         if (length > MAX_FIELD_SIZE) length = MAX_FIELD_SIZE;
-        System.arraycopy(src, start, dest, 0, length);
+        System.arraycopy(src, start, dest, instrument * MAX_FIELD_SIZE, length);
         return length;
     }
 
-    private void buildOutputMessage() {
+    private void buildOutputMessage(int instrument, long seq) {
         outputBuffer.clear();
+        if (encoding == OutputEncoding.BINARY) {
+            int length = BinaryCodec.encodeBidOfferLastPrice(outputBuffer, seq, symbolIds[instrument],
+                    bids[instrument], offers[instrument], lasts[instrument]);
+            outputBuffer.position(length);
+            return;
+        }
 
+        writeSequence(seq);
 
-        writeSequence(sequence++);
-
+        if (symbolTable != null) {
+            byte[] symbol = symbolTable.getSymbolBytes(symbolIds[instrument]);
+            outputBuffer.put((byte) ',');
+            outputBuffer.put(symbol, 0, Math.min(symbol.length, MAX_FIELD_SIZE));
+        }
+        int field = instrument * MAX_FIELD_SIZE;
         outputBuffer.put((byte) ',');
-        outputBuffer.put(lastBid, 0, bidLength);
+        outputBuffer.put(lastBids, field, bidLengths[instrument]);
         outputBuffer.put((byte) ',');
-        outputBuffer.put(lastOffer, 0, offerLength);
+        outputBuffer.put(lastOffers, field, offerLengths[instrument]);
         outputBuffer.put((byte) ',');
-        outputBuffer.put(lastPrice, 0, priceLength);
+        outputBuffer.put(lastPrices, field, priceLengths[instrument]);
         outputBuffer.put((byte) '\n');
     }
 
-    private void writeSequence(int value) {
+    private void writeSequence(long value) {
         if (value == 0) {
             outputBuffer.put((byte) '0');
             return;
@@ -125,11 +288,13 @@ public class BidOfferLastPrice implements FeatureContract {
         outputBuffer.put(digitBuffer, index, digitBuffer.length - index);
     }
 
-    private void flushOutputBuffer() {
-        outputBuffer.flip();
-        byte[] output = new byte[outputBuffer.remaining()];
-        outputBuffer.get(output);
-        transportContract.publish(output, output.length);
+    //-- Messages of a keyed feed name their instrument, so the transport can route them by subscription
+    private void flushOutputBuffer(int instrument) {
+        if (symbolTable != null) {
+            transportContract.publish(symbolIds[instrument], output, outputBuffer.position());
+        } else {
+            transportContract.publish(output, outputBuffer.position());
+        }
     }
 
     @Override
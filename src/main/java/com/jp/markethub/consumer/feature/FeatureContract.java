@@ -1,5 +1,6 @@
 package com.jp.markethub.consumer.feature;
 
+import com.jp.markethub.common.MarketRecord;
 import com.jp.markethub.producer.ProducerType;
 import com.jp.markethub.transport.TcpPublisher;
 import com.jp.markethub.transport.TransportContract;
@@ -9,6 +10,25 @@ import java.util.EnumSet;
 public interface FeatureContract {
     void onUpdate(byte[] data, int length, ProducerType type);
 
+    //-- A typed feature is handed the decoded record instead of the text whenever the producer decodes on ingest
+    default boolean isTyped() {
+        return false;
+    }
+
+    //-- Only invoked on a feature that is typed
+    void onTypedUpdate(MarketRecord record, ProducerType type);
+
+    //-- Invoked once all the data available at the start of a pass has been handed to onUpdate
+    default void onEndOfBatch() {
+    }
+
+    /**
+     * Writes the current last-value state as ordinary messages, invoked from the publishing thread
+     * between batches for every client that joins so it does not have to wait for the next update.
+     */
+    default void writeSnapshot(SnapshotWriter writer) {
+    }
+
     EnumSet<ProducerType> getInterestList();
 
     TransportContract getTcpPublisher();
@@ -0,0 +1,11 @@
+package com.jp.markethub.consumer.feature;
+
+/**
+ * Wire format a feature publishes in.
+ */
+public enum OutputEncoding {
+    //-- SequenceNo,BidPrice,OfferPrice,LastPrice terminated by a new line, kept for existing clients
+    CSV,
+    //-- Fixed width messages as laid out by BinaryCodec
+    BINARY
+}
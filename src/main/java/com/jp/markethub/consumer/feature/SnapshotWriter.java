@@ -0,0 +1,6 @@
+package com.jp.markethub.consumer.feature;
+
+//-- Receives the messages that bring a joining client up to date with the current state of a feature
+public interface SnapshotWriter {
+    void write(int symbolId, byte[] data, int length);
+}
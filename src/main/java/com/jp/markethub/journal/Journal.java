@@ -0,0 +1,131 @@
+package com.jp.markethub.journal;
+
+import com.jp.markethub.common.MemoryFences;
+import com.jp.markethub.common.Sequencer;
+import com.jp.markethub.log.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Append-only journal of the messages of one producer, kept in rolling memory-mapped segment files.
+ * <p>
+ * A segment starts with a header of {@link #SEGMENT_HEADER_LENGTH} bytes, magic, version, first
+ * sequence, and a wall clock millis / nanoTime pair taken together so ingest nanos can be turned into
+ * wall clock time. Records follow back to back, each {@code [length (int)][sequence (long)][ingest
+ * nanos (long)][payload]} padded to 8 bytes, a length of 0 marks the end of the segment.
+ * <p>
+ * Every {@code indexInterval}th sequence and the first record of a segment are also written as
+ * {@code [sequence (long)][offset (long)]} to the sparse index file next to the segment, so a replay
+ * finds its starting point without scanning whole segments.
+ * <p>
+ * Single writer, readers only look at what has been published through {@link #getJournaledSequence()}.
+ */
+public class Journal {
+    public static final int MAGIC = 0x4A504A4C;
+    public static final int VERSION = 1;
+    public static final int SEGMENT_HEADER_LENGTH = 64;
+    public static final int RECORD_HEADER_LENGTH = 20;
+    public static final int INDEX_ENTRY_LENGTH = 16;
+    public static final String SEGMENT_SUFFIX = ".journal";
+    public static final String INDEX_SUFFIX = ".index";
+
+    private final Logger logger = Logger.getInstance();
+    private final File directory;
+    private final int segmentSize;
+    private final int indexInterval;
+    private final Sequencer journaled = new Sequencer();
+
+    private MappedByteBuffer segment;
+    private FileChannel index;
+    private final ByteBuffer indexEntry = ByteBuffer.allocate(INDEX_ENTRY_LENGTH);
+
+    public Journal(File directory, int segmentSize, int indexInterval) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create journal directory " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.indexInterval = indexInterval;
+    }
+
+    static int recordLength(int payloadLength) {
+        return (RECORD_HEADER_LENGTH + payloadLength + 7) & -8;
+    }
+
+    static String fileName(long firstSequence, String suffix) {
+        return String.format("%020d%s", firstSequence, suffix);
+    }
+
+    public void append(long sequence, long ingestNanos, byte[] data, int length) throws IOException {
+        int recordLength = recordLength(length);
+        if (recordLength > segmentSize - SEGMENT_HEADER_LENGTH) {
+            logger.error(Journal.class, "Not journaling message {} of {} bytes, larger than a segment", sequence, length);
+            return;
+        }
+        if (segment == null || segment.position() + recordLength > segmentSize) {
+            roll(sequence);
+        }
+        int offset = segment.position();
+        if (offset == SEGMENT_HEADER_LENGTH || sequence % indexInterval == 0) {
+            indexEntry.clear();
+            indexEntry.putLong(sequence).putLong(offset).flip();
+            index.write(indexEntry);
+        }
+        segment.position(offset + 4);
+        segment.putLong(sequence);
+        segment.putLong(ingestNanos);
+        segment.put(data, 0, length);
+        segment.position(offset + recordLength);
+
+        //-- The length goes in last, a reader that runs ahead sees the end marker rather than half a record
+        MemoryFences.storeFence();
+        segment.putInt(offset, length);
+
+        //-- Readers never look past this, so they never see a partially written record
+        journaled.set(sequence + 1);
+    }
+
+    private void roll(long firstSequence) throws IOException {
+        close();
+        File file = new File(directory, fileName(firstSequence, SEGMENT_SUFFIX));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(segmentSize);
+            segment = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        segment.putInt(MAGIC);
+        segment.putInt(VERSION);
+        segment.putLong(firstSequence);
+        segment.putLong(System.currentTimeMillis());
+        segment.putLong(System.nanoTime());
+        segment.position(SEGMENT_HEADER_LENGTH);
+        index = new RandomAccessFile(new File(directory, fileName(firstSequence, INDEX_SUFFIX)), "rw").getChannel();
+        if (logger.isDebugEnabled()) {
+            logger.debug(Journal.class, "Journaling to new segment " + file);
+        }
+    }
+
+    //-- One past the last sequence written, everything below it can be replayed
+    public long getJournaledSequence() {
+        return journaled.get();
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public void close() throws IOException {
+        if (segment != null) {
+            segment.force();
+            segment = null;
+        }
+        if (index != null) {
+            index.close();
+            index = null;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.jp.markethub.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Replays the records of a {@link Journal} directory from a given sequence, see {@link Journal} for the layout.
+ */
+public class JournalReader {
+
+    public interface RecordHandler {
+        //-- data only holds the record for the duration of the call
+        void onRecord(long sequence, long ingestNanos, byte[] data, int length) throws IOException;
+    }
+
+    private final File directory;
+
+    public JournalReader(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Hands every journaled record with a sequence in [fromSequence, toSequence) to the handler in order.
+     * Returns the number of records replayed.
+     */
+    public long replay(long fromSequence, long toSequence, RecordHandler handler) throws IOException {
+        long[] segments = segments();
+        int first = 0;
+        for (int i = 0; i < segments.length; i++) {
+            if (segments[i] <= fromSequence) {
+                first = i;
+            }
+        }
+
+        long replayed = 0;
+        byte[] data = new byte[256];
+        for (int i = first; i < segments.length && segments[i] < toSequence; i++) {
+            MappedByteBuffer segment = map(new File(directory, Journal.fileName(segments[i], Journal.SEGMENT_SUFFIX)));
+            int offset = i == first ? indexedOffset(segments[i], fromSequence) : Journal.SEGMENT_HEADER_LENGTH;
+            while (offset + Journal.RECORD_HEADER_LENGTH <= segment.capacity()) {
+                int length = segment.getInt(offset);
+                long sequence = segment.getLong(offset + 4);
+                if (length == 0 || sequence >= toSequence) {
+                    break;
+                }
+                if (sequence >= fromSequence) {
+                    if (length > data.length) {
+                        data = new byte[Math.max(length, data.length * 2)];
+                    }
+                    for (int b = 0; b < length; b++) {
+                        data[b] = segment.get(offset + Journal.RECORD_HEADER_LENGTH + b);
+                    }
+                    handler.onRecord(sequence, segment.getLong(offset + 12), data, length);
+                    replayed++;
+                }
+                offset += Journal.recordLength(length);
+            }
+        }
+        return replayed;
+    }
+
+    //-- First sequence of every segment, oldest first
+    private long[] segments() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(Journal.SEGMENT_SUFFIX));
+        if (files == null) {
+            return new long[0];
+        }
+        long[] segments = new long[files.length];
+        for (int i = 0; i < files.length; i++) {
+            String name = files[i].getName();
+            segments[i] = Long.parseLong(name.substring(0, name.length() - Journal.SEGMENT_SUFFIX.length()));
+        }
+        Arrays.sort(segments);
+        return segments;
+    }
+
+    //-- Offset of the last indexed record at or before the sequence, the scan starts from there
+    private int indexedOffset(long firstSequence, long sequence) throws IOException {
+        long offset = Journal.SEGMENT_HEADER_LENGTH;
+        File file = new File(directory, Journal.fileName(firstSequence, Journal.INDEX_SUFFIX));
+        if (!file.exists()) {
+            return (int) offset;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            ByteBuffer entries = ByteBuffer.allocate((int) (raf.length() / Journal.INDEX_ENTRY_LENGTH) * Journal.INDEX_ENTRY_LENGTH);
+            raf.getChannel().read(entries, 0);
+            entries.flip();
+            while (entries.remaining() >= Journal.INDEX_ENTRY_LENGTH) {
+                long indexed = entries.getLong();
+                long indexedOffset = entries.getLong();
+                if (indexed > sequence) {
+                    break;
+                }
+                offset = indexedOffset;
+            }
+        }
+        return (int) offset;
+    }
+
+    private static MappedByteBuffer map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        }
+    }
+}
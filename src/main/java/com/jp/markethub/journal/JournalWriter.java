@@ -0,0 +1,146 @@
+package com.jp.markethub.journal;
+
+import com.jp.markethub.MarketHub;
+import com.jp.markethub.common.thread.ThreadRole;
+import com.jp.markethub.common.thread.ThreadTopology;
+import com.jp.markethub.common.wait.ProgressiveParkWaitStrategy;
+import com.jp.markethub.common.wait.WaitStrategy;
+import com.jp.markethub.config.MarketHubConfig;
+import com.jp.markethub.log.Logger;
+import com.jp.markethub.producer.Producer;
+import com.jp.markethub.producer.ProducerType;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Tails the ring of every producer on its own thread and appends each message to the {@link Journal}
+ * of the producer, so disk I/O never delays ingest or fan-out. The thread parks while there is nothing
+ * to journal, a journal that falls a whole ring behind logs the messages it lost.
+ * <p>
+ * Every producer connection gets its own journal under {@code <directory>/<type>/<connect millis>},
+ * as the sequences of a new connection start over.
+ */
+public class JournalWriter implements Runnable {
+    private final Logger logger = Logger.getInstance();
+
+    private final MarketHub hub;
+    private final File directory;
+    private final int segmentSize;
+    private final int indexInterval;
+    private final WaitStrategy waitStrategy = new ProgressiveParkWaitStrategy();
+
+    private final Producer[] producers = new Producer[ProducerType.values().length];
+    private final Journal[] journals = new Journal[ProducerType.values().length];
+    private final ByteBuffer[] readViews = new ByteBuffer[ProducerType.values().length];
+    private final long[] lastSequence = new long[ProducerType.values().length];
+    private volatile boolean running = true;
+
+    public JournalWriter(MarketHub hub) {
+        MarketHubConfig config = hub.getConfig();
+        this.hub = hub;
+        this.directory = new File(config.getJournalDirectory());
+        this.segmentSize = config.getJournalSegmentSize();
+        this.indexInterval = config.getJournalIndexInterval();
+    }
+
+    public void start(ThreadTopology threads) {
+        threads.start(ThreadRole.JOURNAL, "journal", this);
+    }
+
+    @Override
+    public void run() {
+        byte[] data = new byte[hub.getConfig().getReadBufferSize()];
+        int idleCount = 0;
+        try {
+            while (running) {
+                boolean processed = false;
+                for (ProducerType type : ProducerType.values()) {
+                    Producer producer = hub.getProducer(type);
+                    if (producer == null) continue;
+                    if (producers[type.getSequenceId()] != producer) {
+                        open(type, producer);
+                    }
+                    processed |= journal(type, producer, data);
+                }
+                if (processed) {
+                    idleCount = 0;
+                } else {
+                    waitStrategy.idle(idleCount < Integer.MAX_VALUE ? ++idleCount : idleCount);
+                }
+            }
+        } catch (IOException e) {
+            logger.error(JournalWriter.class, "Journal stopped: {}", e.getMessage());
+        } finally {
+            closeJournals();
+        }
+    }
+
+    private void open(ProducerType type, Producer producer) throws IOException {
+        int id = type.getSequenceId();
+        synchronized (journals) {
+            if (journals[id] != null) {
+                journals[id].close();
+            }
+            File journalDirectory = new File(new File(directory, type.name()), String.valueOf(System.currentTimeMillis()));
+            journals[id] = new Journal(journalDirectory, segmentSize, indexInterval);
+        }
+        producers[id] = producer;
+        readViews[id] = producer.newReadView();
+        lastSequence[id] = 0;
+    }
+
+    private boolean journal(ProducerType type, Producer producer, byte[] data) throws IOException {
+        int id = type.getSequenceId();
+        long currentSeq = producer.getSequencer().get();
+        long seq = lastSequence[id];
+        if (currentSeq <= seq) {
+            return false;
+        }
+        if (currentSeq - seq > producer.getBufferSize()) {
+            long resume = currentSeq - producer.getBufferSize();
+            logger.error(JournalWriter.class, "Journal of {} lost sequences {} to {}", type, seq, resume - 1);
+            seq = resume;
+        }
+        Journal journal = journals[id];
+        ByteBuffer readView = readViews[id];
+        for (; seq < currentSeq; seq++) {
+            int length = producer.getData(seq, data, readView);
+            long ingestNanos = producer.getIngestNanos(seq);
+            if (length < 0 || ingestNanos < 0) {
+                logger.error(JournalWriter.class, "Journal of {} lost overwritten sequence {}", type, seq);
+                continue;
+            }
+            journal.append(seq, ingestNanos, data, length);
+        }
+        lastSequence[id] = currentSeq;
+        return true;
+    }
+
+    //-- Journal currently written for the producer type, null before it connected
+    public Journal getJournal(ProducerType type) {
+        synchronized (journals) {
+            return journals[type.getSequenceId()];
+        }
+    }
+
+    private void closeJournals() {
+        synchronized (journals) {
+            for (Journal journal : journals) {
+                try {
+                    if (journal != null) {
+                        journal.close();
+                    }
+                } catch (IOException e) {
+                    logger.error(JournalWriter.class, "Error closing journal: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    public void close() {
+        running = false;
+        waitStrategy.signal();
+    }
+}
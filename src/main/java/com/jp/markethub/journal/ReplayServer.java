@@ -0,0 +1,150 @@
+package com.jp.markethub.journal;
+
+import com.jp.markethub.common.thread.ThreadRole;
+import com.jp.markethub.common.thread.ThreadTopology;
+import com.jp.markethub.log.Logger;
+import com.jp.markethub.producer.ProducerType;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves replays of the journal over TCP with plain blocking I/O, well away from the live path. The acceptor
+ * thread hands every connection to a session thread of its own, so a slow replay client only holds up itself.
+ * A client sends {@code REPLAY,<ProducerType>,<FromSequence>} terminated by a new line and
+ * receives every journaled record from that sequence up to the time of the request as
+ * {@code [length (int)][sequence (long)][ingest nanos (long)][payload]}, after which the connection is closed.
+ */
+public class ReplayServer implements Runnable {
+    private final Logger logger = Logger.getInstance();
+    private final JournalWriter journalWriter;
+    private final int port;
+    private final ThreadTopology threads;
+    //-- Connections being served, closed along with the server
+    private final Set<SocketChannel> sessions = ConcurrentHashMap.newKeySet();
+    private ServerSocketChannel serverChannel;
+    private int sessionCount;
+
+    public ReplayServer(JournalWriter journalWriter, int port, ThreadTopology threads) {
+        this.journalWriter = journalWriter;
+        this.port = port;
+        this.threads = threads;
+    }
+
+    public void start() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        threads.start(ThreadRole.JOURNAL, "journal-replay-" + port, this);
+    }
+
+    @Override
+    public void run() {
+        while (serverChannel.isOpen()) {
+            try {
+                SocketChannel client = serverChannel.accept();
+                sessions.add(client);
+                threads.startSession("journal-replay-" + port + "-" + (++sessionCount), new ReplaySession(client));
+            } catch (AsynchronousCloseException e) {
+                break;
+            } catch (IOException e) {
+                logger.error(ReplayServer.class, "Replay accept failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    //-- Serves the single request of one connection
+    private class ReplaySession implements Runnable, JournalReader.RecordHandler {
+        private final SocketChannel client;
+        private final ByteBuffer header = ByteBuffer.allocate(Journal.RECORD_HEADER_LENGTH);
+        private String type;
+        private long nextSequence;
+
+        ReplaySession(SocketChannel client) {
+            this.client = client;
+        }
+
+        @Override
+        public void run() {
+            try (SocketChannel channel = client) {
+                ByteBuffer request = ByteBuffer.allocate(128);
+                if (!readLine(channel, request)) {
+                    return;
+                }
+                String[] fields = new String(request.array(), 0, request.position(), StandardCharsets.US_ASCII).trim().split(",");
+                Journal journal = fields.length == 3 && "REPLAY".equals(fields[0]) ? journalWriter.getJournal(ProducerType.valueOf(fields[1])) : null;
+                if (journal == null) {
+                    logger.error(ReplayServer.class, "Invalid replay request {}", String.join(",", fields));
+                    return;
+                }
+                type = fields[1];
+                nextSequence = Long.parseLong(fields[2]);
+                long toSequence = journal.getJournaledSequence();
+                long replayed = new JournalReader(journal.getDirectory()).replay(nextSequence, toSequence, this);
+                if (nextSequence < toSequence) {
+                    logger.error(ReplayServer.class, "Replay of {} is missing sequences {} to {}", type, nextSequence, toSequence - 1);
+                }
+                if (logger.isDebugEnabled()) {
+                    logger.debug(ReplayServer.class, "Replayed " + replayed + " " + type + " records from " + fields[2]);
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                logger.error(ReplayServer.class, "Replay failed: {}", e.getMessage());
+            } finally {
+                sessions.remove(client);
+            }
+        }
+
+        @Override
+        public void onRecord(long sequence, long ingestNanos, byte[] data, int length) throws IOException {
+            //-- Records the journal lost to a lapped ring leave a gap
+            if (sequence > nextSequence) {
+                logger.error(ReplayServer.class, "Replay of {} is missing sequences {} to {}", type, nextSequence, sequence - 1);
+            }
+            nextSequence = sequence + 1;
+            header.clear();
+            header.putInt(length).putLong(sequence).putLong(ingestNanos).flip();
+            write(client, header);
+            write(client, ByteBuffer.wrap(data, 0, length));
+        }
+    }
+
+    private static boolean readLine(SocketChannel client, ByteBuffer request) throws IOException {
+        while (request.hasRemaining()) {
+            if (client.read(request) < 0) {
+                return false;
+            }
+            for (int i = 0; i < request.position(); i++) {
+                if (request.get(i) == '\n') {
+                    request.position(i);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void write(SocketChannel client, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            client.write(buffer);
+        }
+    }
+
+    public void close() {
+        try {
+            if (serverChannel != null) {
+                serverChannel.close();
+            }
+            for (SocketChannel session : sessions) {
+                session.close();
+            }
+        } catch (IOException e) {
+            logger.error(ReplayServer.class, "Error closing replay server: {}", e.getMessage());
+        }
+    }
+}
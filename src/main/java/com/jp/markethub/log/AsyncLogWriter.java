@@ -0,0 +1,163 @@
+package com.jp.markethub.log;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Multi producer ring of preallocated log entries drained to a file by one background thread.
+ * <p>
+ * A logging thread claims a sequence with a CAS, copies level, class, thread, timestamp, format and arguments
+ * into the arrays of the slot and publishes it with a lazySet of the slot sequence. It never blocks, when the
+ * writer is a whole ring behind the entry is dropped and counted, and the drop reported in the file later.
+ */
+final class AsyncLogWriter implements Runnable {
+    private static final int MAX_ARGS = 4;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final Logger logger;
+    private final int mask;
+    private final AtomicLong claimSequence = new AtomicLong();
+    private final AtomicLongArray published;
+    private volatile long consumedSequence;
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final String[] levels;
+    private final Class<?>[] classes;
+    private final Thread[] threads;
+    private final long[] times;
+    private final String[] formats;
+    private final int[] argCounts;
+    private final int[] referenceMasks;
+    private final Object[] objects;
+    private final long[] values;
+
+    private final Writer out;
+    private final StringBuilder message = new StringBuilder(256);
+    private volatile boolean running = true;
+    private Thread thread;
+
+    AsyncLogWriter(Logger logger, String file, int capacity) throws IOException {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Log ring capacity must be a power of two: " + capacity);
+        }
+        this.logger = logger;
+        this.mask = capacity - 1;
+        this.published = new AtomicLongArray(capacity);
+        this.levels = new String[capacity];
+        this.classes = new Class<?>[capacity];
+        this.threads = new Thread[capacity];
+        this.times = new long[capacity];
+        this.formats = new String[capacity];
+        this.argCounts = new int[capacity];
+        this.referenceMasks = new int[capacity];
+        this.objects = new Object[capacity * MAX_ARGS];
+        this.values = new long[capacity * MAX_ARGS];
+        this.out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    void start() {
+        thread = new Thread(this, "log-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void append(String level, Class<?> clazz, String format, int argCount, int referenceMask,
+                Object object0, long value0, Object object1, long value1,
+                Object object2, long value2, Object object3, long value3) {
+        long sequence;
+        do {
+            sequence = claimSequence.get();
+            if (sequence - consumedSequence > mask) {
+                dropped.getAndIncrement();
+                return;
+            }
+        } while (!claimSequence.compareAndSet(sequence, sequence + 1));
+
+        int slot = (int) sequence & mask;
+        levels[slot] = level;
+        classes[slot] = clazz;
+        threads[slot] = Thread.currentThread();
+        times[slot] = System.currentTimeMillis();
+        formats[slot] = format;
+        argCounts[slot] = argCount;
+        referenceMasks[slot] = referenceMask;
+        int args = slot * MAX_ARGS;
+        objects[args] = object0;
+        objects[args + 1] = object1;
+        objects[args + 2] = object2;
+        objects[args + 3] = object3;
+        values[args] = value0;
+        values[args + 1] = value1;
+        values[args + 2] = value2;
+        values[args + 3] = value3;
+        published.lazySet(slot, sequence + 1);
+    }
+
+    @Override
+    public void run() {
+        long next = 0;
+        long reportedDrops = 0;
+        try {
+            while (true) {
+                int slot = (int) next & mask;
+                if (published.get(slot) == next + 1) {
+                    write(slot);
+                    next++;
+                    consumedSequence = next;
+                    continue;
+                }
+                long drops = dropped.get();
+                if (drops != reportedDrops) {
+                    out.write("[log-writer] dropped " + (drops - reportedDrops) + " messages, the ring was full\n");
+                    reportedDrops = drops;
+                }
+                out.flush();
+                //-- Stop only once everything logged before close has been written
+                if (!running && claimSequence.get() == next) {
+                    break;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        } catch (IOException e) {
+            System.err.println("Log writer stopped: " + e.getMessage());
+        } finally {
+            try {
+                out.close();
+            } catch (IOException e) {
+                System.err.println("Error closing log file: " + e.getMessage());
+            }
+        }
+    }
+
+    private void write(int slot) throws IOException {
+        int args = slot * MAX_ARGS;
+        message.setLength(0);
+        Logger.appendFormatted(message, formats[slot], argCounts[slot], referenceMasks[slot], objects, values, args);
+        out.write(logger.format(threads[slot], times[slot], classes[slot], levels[slot], message));
+        out.write('\n');
+        //-- Let go of the references so the ring does not keep them alive
+        classes[slot] = null;
+        threads[slot] = null;
+        formats[slot] = null;
+        for (int i = args; i < args + MAX_ARGS; i++) {
+            objects[i] = null;
+        }
+    }
+
+    void close() {
+        running = false;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
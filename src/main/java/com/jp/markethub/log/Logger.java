@@ -1,12 +1,30 @@
 package com.jp.markethub.log;
 
+import java.io.IOException;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 
+/**
+ * Logs to standard out on the calling thread, or once {@link #startAsync} is called, through a preallocated
+ * ring drained to a file by a background thread.
+ * <p>
+ * Besides a ready made message every level takes a format whose {@code {}} placeholders are filled in with up
+ * to four arguments, longs or references. In async mode such a call only copies the format, the arguments
+ * and a timestamp into the ring, the message is built by the background thread, so logging from a hot
+ * thread costs nanoseconds and no allocation. A reference argument is only turned into text later, it
+ * must therefore not change after the call, a String, an enum or an exception message are fine.
+ */
 public class Logger {
+    static final String INFO = "INFO";
+    static final String DEBUG = "DEBUG";
+    static final String ERROR = "ERROR";
+
     private static Logger instance;
     private final DateTimeFormatter formatter;
-    
+    private volatile AsyncLogWriter asyncWriter;
+
     private Logger() {
         formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
     }
@@ -17,28 +35,192 @@ public class Logger {
         }
         return instance;
     }
-    
+
+    //-- From now on every message goes through a ring of the given capacity to the file, in order
+    public synchronized void startAsync(String file, int capacity) throws IOException {
+        if (asyncWriter == null) {
+            AsyncLogWriter writer = new AsyncLogWriter(this, file, capacity);
+            writer.start();
+            asyncWriter = writer;
+        }
+    }
+
+    //-- Writes out whatever is still in the ring and goes back to logging on the calling thread
+    public synchronized void stopAsync() {
+        AsyncLogWriter writer = asyncWriter;
+        if (writer != null) {
+            asyncWriter = null;
+            writer.close();
+        }
+    }
+
     public void info(Class<?> clazz, String message) {
-        log("INFO", clazz, message);
+        log(INFO, clazz, message);
     }
     
     public void debug(Class<?> clazz, String message) {
-        log("DEBUG", clazz, message);
+        log(DEBUG, clazz, message);
     }
     
     public void error(Class<?> clazz, String message) {
-        log("ERROR", clazz, message);
+        log(ERROR, clazz, message);
     }
-    
+
+    public void info(Class<?> clazz, String format, Object arg) {
+        log(INFO, clazz, format, 1, 0b1, arg, 0, null, 0, null, 0, null, 0);
+    }
+
+    public void info(Class<?> clazz, String format, long arg) {
+        log(INFO, clazz, format, 1, 0, null, arg, null, 0, null, 0, null, 0);
+    }
+
+    public void info(Class<?> clazz, String format, long arg1, long arg2) {
+        log(INFO, clazz, format, 2, 0, null, arg1, null, arg2, null, 0, null, 0);
+    }
+
+    public void info(Class<?> clazz, String format, Object arg1, long arg2) {
+        log(INFO, clazz, format, 2, 0b1, arg1, 0, null, arg2, null, 0, null, 0);
+    }
+
+    public void info(Class<?> clazz, String format, long arg1, Object arg2) {
+        log(INFO, clazz, format, 2, 0b10, null, arg1, arg2, 0, null, 0, null, 0);
+    }
+
+    public void info(Class<?> clazz, String format, Object arg1, Object arg2) {
+        log(INFO, clazz, format, 2, 0b11, arg1, 0, arg2, 0, null, 0, null, 0);
+    }
+
+    public void info(Class<?> clazz, String format, Object arg1, Object arg2, Object arg3) {
+        log(INFO, clazz, format, 3, 0b111, arg1, 0, arg2, 0, arg3, 0, null, 0);
+    }
+
+    public void info(Class<?> clazz, String format, Object arg1, long arg2, long arg3) {
+        log(INFO, clazz, format, 3, 0b1, arg1, 0, null, arg2, null, arg3, null, 0);
+    }
+
+    public void info(Class<?> clazz, String format, Object arg1, long arg2, long arg3, long arg4) {
+        log(INFO, clazz, format, 4, 0b1, arg1, 0, null, arg2, null, arg3, null, arg4);
+    }
+
+    public void error(Class<?> clazz, String format, Object arg) {
+        log(ERROR, clazz, format, 1, 0b1, arg, 0, null, 0, null, 0, null, 0);
+    }
+
+    public void error(Class<?> clazz, String format, long arg) {
+        log(ERROR, clazz, format, 1, 0, null, arg, null, 0, null, 0, null, 0);
+    }
+
+    public void error(Class<?> clazz, String format, long arg1, long arg2) {
+        log(ERROR, clazz, format, 2, 0, null, arg1, null, arg2, null, 0, null, 0);
+    }
+
+    public void error(Class<?> clazz, String format, Object arg1, long arg2) {
+        log(ERROR, clazz, format, 2, 0b1, arg1, 0, null, arg2, null, 0, null, 0);
+    }
+
+    public void error(Class<?> clazz, String format, long arg1, Object arg2) {
+        log(ERROR, clazz, format, 2, 0b10, null, arg1, arg2, 0, null, 0, null, 0);
+    }
+
+    public void error(Class<?> clazz, String format, Object arg1, Object arg2) {
+        log(ERROR, clazz, format, 2, 0b11, arg1, 0, arg2, 0, null, 0, null, 0);
+    }
+
+    public void error(Class<?> clazz, String format, Object arg1, Object arg2, Object arg3) {
+        log(ERROR, clazz, format, 3, 0b111, arg1, 0, arg2, 0, arg3, 0, null, 0);
+    }
+
+    public void error(Class<?> clazz, String format, Object arg1, long arg2, long arg3) {
+        log(ERROR, clazz, format, 3, 0b1, arg1, 0, null, arg2, null, arg3, null, 0);
+    }
+
+    public void error(Class<?> clazz, String format, Object arg1, long arg2, long arg3, long arg4) {
+        log(ERROR, clazz, format, 4, 0b1, arg1, 0, null, arg2, null, arg3, null, arg4);
+    }
+
     private void log(String level, Class<?> clazz, String message) {
-        String timestamp = LocalDateTime.now().format(formatter);
-        String logLine = String.format("[%s]---[%s] [%s] [%s] - %s",Thread.currentThread().getName(),
-            timestamp, clazz.getSimpleName(), level, message);
-        System.out.println(logLine);
+        AsyncLogWriter writer = asyncWriter;
+        if (writer != null) {
+            writer.append(level, clazz, message, 0, 0, null, 0, null, 0, null, 0, null, 0);
+            return;
+        }
+        System.out.println(format(Thread.currentThread(), System.currentTimeMillis(), clazz, level, message));
         System.out.flush();
     }
 
+    //-- Argument i is the reference objects[i] when bit i of referenceMask is set, the long values[i] otherwise
+    private void log(String level, Class<?> clazz, String format, int argCount, int referenceMask,
+                     Object object0, long value0, Object object1, long value1,
+                     Object object2, long value2, Object object3, long value3) {
+        AsyncLogWriter writer = asyncWriter;
+        if (writer != null) {
+            writer.append(level, clazz, format, argCount, referenceMask,
+                    object0, value0, object1, value1, object2, value2, object3, value3);
+            return;
+        }
+        //-- Formatted straight from the arguments, only the message itself is built
+        StringBuilder message = new StringBuilder(format.length() + 32);
+        int arg = 0;
+        int from = 0;
+        int placeholder;
+        while (arg < argCount && (placeholder = format.indexOf("{}", from)) >= 0) {
+            message.append(format, from, placeholder);
+            boolean reference = (referenceMask & (1 << arg)) != 0;
+            switch (arg) {
+                case 0:
+                    appendArgument(message, reference, object0, value0);
+                    break;
+                case 1:
+                    appendArgument(message, reference, object1, value1);
+                    break;
+                case 2:
+                    appendArgument(message, reference, object2, value2);
+                    break;
+                default:
+                    appendArgument(message, reference, object3, value3);
+                    break;
+            }
+            arg++;
+            from = placeholder + 2;
+        }
+        message.append(format, from, format.length());
+        log(level, clazz, message.toString());
+    }
+
+    private static void appendArgument(StringBuilder message, boolean reference, Object object, long value) {
+        if (reference) {
+            message.append(object);
+        } else {
+            message.append(value);
+        }
+    }
+
+    String format(Thread thread, long timeMillis, Class<?> clazz, String level, CharSequence message) {
+        String timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(timeMillis), ZoneId.systemDefault()).format(formatter);
+        return String.format("[%s]---[%s] [%s] [%s] - %s", thread.getName(),
+            timestamp, clazz.getSimpleName(), level, message);
+    }
+
+    //-- Replaces the placeholders of the format in order with the arguments stored from offset on
+    static void appendFormatted(StringBuilder message, String format, int argCount, int referenceMask,
+                                Object[] objects, long[] values, int offset) {
+        int arg = 0;
+        int from = 0;
+        int placeholder;
+        while (arg < argCount && (placeholder = format.indexOf("{}", from)) >= 0) {
+            message.append(format, from, placeholder);
+            if ((referenceMask & (1 << arg)) != 0) {
+                message.append(objects[offset + arg]);
+            } else {
+                message.append(values[offset + arg]);
+            }
+            arg++;
+            from = placeholder + 2;
+        }
+        message.append(format, from, format.length());
+    }
+
     public boolean isDebugEnabled() {
         return false;
     }
-}
\ No newline at end of file
+}
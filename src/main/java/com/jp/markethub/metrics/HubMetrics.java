@@ -0,0 +1,108 @@
+package com.jp.markethub.metrics;
+
+import com.jp.markethub.log.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stage latencies and throughput counters of a running hub.
+ * <p>
+ * The live path only ever increments preallocated counters, reading them is left to JMX under
+ * {@code com.jp.markethub} and to the {@link MetricsEndpoint}, so watching the hub costs it nothing
+ * beyond the clock reads of the timed stages.
+ */
+public class HubMetrics implements HubMetricsMBean {
+    private static final String DOMAIN = "com.jp.markethub";
+    private final Logger logger = Logger.getInstance();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+    private final AtomicLong ingestedBytes = new AtomicLong();
+    private final long startMillis = System.currentTimeMillis();
+    //-- Names this instance registered, the only ones it unregisters
+    private final List<ObjectName> registeredNames = new ArrayList<>();
+
+    public HubMetrics() {
+        for (Stage stage : Stage.values()) {
+            histograms[stage.ordinal()] = new LatencyHistogram();
+        }
+    }
+
+    public void record(Stage stage, long nanos) {
+        histograms[stage.ordinal()].record(nanos);
+    }
+
+    public void onRead(int bytes) {
+        ingestedBytes.getAndAdd(bytes);
+    }
+
+    public LatencyHistogram getHistogram(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    @Override
+    public long getIngestedMessages() {
+        return getHistogram(Stage.INGEST).getCount();
+    }
+
+    @Override
+    public long getIngestedBytes() {
+        return ingestedBytes.get();
+    }
+
+    @Override
+    public long getDispatchedMessages() {
+        return getHistogram(Stage.DISPATCH).getCount();
+    }
+
+    @Override
+    public long getPublishedMessages() {
+        return getHistogram(Stage.PUBLISH).getCount();
+    }
+
+    @Override
+    public long getUptimeMillis() {
+        return System.currentTimeMillis() - startMillis;
+    }
+
+    public void registerMBeans() {
+        try {
+            register(this, new ObjectName(DOMAIN + ":type=Throughput"));
+            for (Stage stage : Stage.values()) {
+                register(getHistogram(stage), new ObjectName(DOMAIN + ":type=Latency,stage=" + stage));
+            }
+        } catch (JMException e) {
+            logger.error(HubMetrics.class, "Failed to register metrics MBeans: {}", e.getMessage());
+        }
+    }
+
+    //-- A hub started again in the same JVM takes the names over
+    private synchronized void register(Object mbean, ObjectName name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(mbean, name);
+        registeredNames.add(name);
+    }
+
+    //-- Leaves alone whatever else lives under the domain, other hubs of the JVM included
+    public synchronized void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registeredNames) {
+            try {
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+            } catch (JMException e) {
+                logger.error(HubMetrics.class, "Failed to unregister metrics MBean {}: {}", name, e.getMessage());
+            }
+        }
+        registeredNames.clear();
+    }
+}
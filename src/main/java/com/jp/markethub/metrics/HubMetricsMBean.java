@@ -0,0 +1,14 @@
+package com.jp.markethub.metrics;
+
+//-- Throughput of the hub over JMX, running totals since it started
+public interface HubMetricsMBean {
+    long getIngestedMessages();
+
+    long getIngestedBytes();
+
+    long getDispatchedMessages();
+
+    long getPublishedMessages();
+
+    long getUptimeMillis();
+}
@@ -0,0 +1,14 @@
+package com.jp.markethub.metrics;
+
+//-- Latencies of one stage over JMX, all in nanoseconds
+public interface LatencyHistogramMBean {
+    long getCount();
+
+    long getMax();
+
+    long getP50();
+
+    long getP99();
+
+    long getP999();
+}
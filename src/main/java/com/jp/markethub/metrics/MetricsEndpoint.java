@@ -0,0 +1,89 @@
+package com.jp.markethub.metrics;
+
+import com.jp.markethub.common.thread.ThreadRole;
+import com.jp.markethub.common.thread.ThreadTopology;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the {@link HubMetrics} as plain text on {@code http://localhost:<port>/metrics}, one
+ * {@code name{labels} value} line per figure, from a single thread of its own. Latencies are in nanoseconds.
+ */
+public class MetricsEndpoint {
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    private final HubMetrics metrics;
+    private final int port;
+    private final ThreadTopology threads;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public MetricsEndpoint(HubMetrics metrics, int port, ThreadTopology threads) {
+        this.metrics = metrics;
+        this.port = port;
+        this.threads = threads;
+    }
+
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", this::handle);
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = threads.newThread(ThreadRole.SERVICE, "metrics-http-" + port, r);
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        byte[] body = render().getBytes(StandardCharsets.US_ASCII);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=us-ascii");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    String render() {
+        StringBuilder text = new StringBuilder(2048);
+        line(text, "markethub_uptime_millis", "", metrics.getUptimeMillis());
+        line(text, "markethub_ingested_messages_total", "", metrics.getIngestedMessages());
+        line(text, "markethub_ingested_bytes_total", "", metrics.getIngestedBytes());
+        line(text, "markethub_dispatched_messages_total", "", metrics.getDispatchedMessages());
+        line(text, "markethub_published_messages_total", "", metrics.getPublishedMessages());
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = metrics.getHistogram(stage);
+            String label = "stage=\"" + stage.name().toLowerCase() + "\"";
+            line(text, "markethub_latency_nanos_count", label, histogram.getCount());
+            line(text, "markethub_latency_nanos_max", label, histogram.getMax());
+            for (double quantile : QUANTILES) {
+                line(text, "markethub_latency_nanos", label + ",quantile=\"" + quantile + "\"", histogram.getPercentile(quantile));
+            }
+        }
+        return text.toString();
+    }
+
+    private static void line(StringBuilder text, String name, String labels, long value) {
+        text.append(name);
+        if (!labels.isEmpty()) {
+            text.append('{').append(labels).append('}');
+        }
+        text.append(' ').append(value).append('\n');
+    }
+
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+}
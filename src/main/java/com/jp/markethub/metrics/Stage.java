@@ -0,0 +1,13 @@
+package com.jp.markethub.metrics;
+
+//-- The stages of the live path a message is timed through
+public enum Stage {
+    //-- Socket read in the Producer to the message being published in its ring
+    INGEST,
+    //-- Ring publish to the feature being handed the message
+    DISPATCH,
+    //-- Start of FeatureContract.onUpdate to the end of the transport publish it triggers
+    PUBLISH,
+    //-- End of batch handling of the feature and its transport, where conflated and coalesced output goes out
+    BATCH_FLUSH
+}
@@ -0,0 +1,8 @@
+package com.jp.markethub.producer;
+
+public enum IngestMode {
+    //-- Channel is serviced by one of the shared selector threads of the IngestReactor
+    REACTOR,
+    //-- Channel is serviced by its own thread spinning on a non-blocking read
+    BUSY_POLL
+}
@@ -0,0 +1,127 @@
+package com.jp.markethub.producer;
+
+import com.jp.markethub.common.thread.ThreadRole;
+import com.jp.markethub.common.thread.ThreadTopology;
+import com.jp.markethub.log.Logger;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Services the channels of every {@link Producer} connected in {@link IngestMode#REACTOR} mode from a
+ * small, fixed set of selector threads. A quiet feed costs nothing, as the thread only wakes up when
+ * one of its channels becomes readable, so dozens of feeds can share a single core.
+ */
+public class IngestReactor {
+    private final Logger logger = Logger.getInstance();
+
+    private final Worker[] workers;
+    private int nextWorker;
+    private volatile boolean running = true;
+
+    public IngestReactor(int threads) throws IOException {
+        workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(Selector.open());
+        }
+    }
+
+    public void start(ThreadTopology threads) {
+        for (int i = 0; i < workers.length; i++) {
+            threads.start(ThreadRole.INGEST, "ingest-reactor-" + i, workers[i]);
+        }
+    }
+
+    //-- Producers are spread round robin, registration itself happens on the selector thread
+    synchronized void register(Producer producer) {
+        Worker worker = workers[nextWorker++ % workers.length];
+        worker.pending.add(producer);
+        worker.selector.wakeup();
+    }
+
+    public void close() {
+        running = false;
+        for (Worker worker : workers) {
+            worker.selector.wakeup();
+        }
+    }
+
+    private final class Worker implements Runnable {
+        private final Selector selector;
+        private final Queue<Producer> pending = new ConcurrentLinkedQueue<>();
+
+        private Worker(Selector selector) {
+            this.selector = selector;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select();
+                    registerPending();
+                    processSelectedKeys();
+                }
+            } catch (ClosedSelectorException e) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug(IngestReactor.class, "Ingest selector closed");
+                }
+            } catch (IOException e) {
+                logger.error(IngestReactor.class, "Ingest selector error: {}", e.getMessage());
+            } finally {
+                closeSelector();
+            }
+        }
+
+        private void registerPending() {
+            Producer producer;
+            while ((producer = pending.poll()) != null) {
+                try {
+                    producer.getChannel().register(selector, SelectionKey.OP_READ, producer);
+                    if (logger.isDebugEnabled()) {
+                        logger.debug(IngestReactor.class, "Registered " + producer.getType() + " producer with " + Thread.currentThread().getName());
+                    }
+                } catch (IOException e) {
+                    producer.onReadError(e);
+                    producer.disconnect();
+                }
+            }
+        }
+
+        private void processSelectedKeys() {
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+
+                Producer producer = (Producer) key.attachment();
+                try {
+                    if (key.isValid() && key.isReadable() && producer.drain() == -1) {
+                        key.cancel();
+                        producer.disconnect();
+                    }
+                } catch (CancelledKeyException e) {
+                    //-- Producer was disconnected while its key was selected
+                } catch (IOException e) {
+                    key.cancel();
+                    producer.onReadError(e);
+                    producer.disconnect();
+                }
+            }
+        }
+
+        private void closeSelector() {
+            try {
+                selector.close();
+            } catch (IOException e) {
+                logger.error(IngestReactor.class, "Error closing ingest selector: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -2,7 +2,17 @@ package com.jp.markethub.producer;
 
 import com.jp.markethub.config.MarketHubConfig;
 import com.jp.markethub.log.Logger;
+import com.jp.markethub.common.FixedPoint;
+import com.jp.markethub.common.MarketRecord;
+import com.jp.markethub.common.RecordColumns;
+import com.jp.markethub.common.RingBuffer;
 import com.jp.markethub.common.Sequencer;
+import com.jp.markethub.common.SymbolTable;
+import com.jp.markethub.common.thread.ThreadRole;
+import com.jp.markethub.common.thread.ThreadTopology;
+import com.jp.markethub.common.wait.WaitStrategy;
+import com.jp.markethub.metrics.HubMetrics;
+import com.jp.markethub.metrics.Stage;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
@@ -16,42 +26,91 @@ public class Producer {
     private SocketChannel channel;
 
     private final int port;
-    private final int[] lengths;
-    private final byte[][] ringBuffer;
+    private final RingBuffer ringBuffer;
+    //-- Only present with typed ingest, every message is then also decoded once into numeric columns
+    private final RecordColumns columns;
+    private final SymbolTable symbolTable;
+    private final boolean keyedFeeds;
     private final int bufferSize;
     private final ProducerType type;
     private final Sequencer sequencer = new Sequencer();
+    private final WaitStrategy ingestWaitStrategy;
+    //-- Null unless metrics are enabled
+    private final HubMetrics metrics;
+    private volatile WaitStrategy[] blockedReaders = new WaitStrategy[0];
 
-    private byte[] accumulatedData = new byte[0];
+    private final ByteBuffer readBuffer;
+    private int scanPosition;
     private long firstDataTime = -1;
+    //-- Gaps in the SequenceNo of an unkeyed feed, lost before reaching the hub, only the ingest thread writes them
+    private long lastFeedSequence = -1;
+    private volatile long feedGaps;
+    private volatile long feedMessagesMissed;
 
-    public Producer(ProducerType type, int port, MarketHubConfig config) {
+    public Producer(ProducerType type, int port, MarketHubConfig config, SymbolTable symbolTable, HubMetrics metrics) {
         this.type = type;
+        this.metrics = metrics;
+        this.symbolTable = symbolTable;
+        this.keyedFeeds = config.isKeyedFeeds();
         this.port = port;
         this.bufferSize =  config.getBufferSize();
-        this.ringBuffer = new byte[bufferSize][256];
-        this.lengths = new int[bufferSize];
-        validateBufferSize(bufferSize);
+        //-- A framed message can never be longer than the read buffer, so records are never truncated
+        this.ringBuffer = new RingBuffer(bufferSize, config.getRingCapacity(), config.getReadBufferSize());
+        this.columns = config.isTypedIngest() ? new RecordColumns(bufferSize) : null;
+        this.readBuffer = ByteBuffer.allocateDirect(config.getReadBufferSize());
+        this.ingestWaitStrategy = config.getIngestWaitStrategy().create();
     }
 
-    private void validateBufferSize(int size) {
-        if ((size & (size - 1)) != 0) {
-            throw new IllegalArgumentException("Buffer size must be power-of-two");
-        }
+    //-- View of the ring for one reader, every reader thread creates its own once
+    public ByteBuffer newReadView() {
+        return ringBuffer.newReadView();
+    }
+
+    //-- Copies the message of the given sequence into dst, which must hold getMaxMessageLength() bytes
+    public int getData(long sequence, byte[] dst, ByteBuffer readView) {
+        return ringBuffer.getData(sequence, dst, readView);
+    }
+
+    //-- Fills record with the decoded message of the given sequence, false when it was overwritten
+    public boolean getRecord(long sequence, MarketRecord record) {
+        return columns.read(sequence, record);
     }
 
-    public byte[] getData(long sequence) {
-        return ringBuffer[(int) (sequence & (bufferSize - 1))];
+    /**
+     * System.nanoTime() of the read the message of the given sequence arrived with, -1 once overwritten.
+     * With metrics enabled it is the time the message was published to the ring instead.
+     */
+    public long getIngestNanos(long sequence) {
+        return ringBuffer.getTimestamp(sequence);
+    }
+
+    public boolean isTyped() {
+        return columns != null;
     }
 
     public int getDataLength(long sequence) {
-        return lengths[(int) (sequence & (bufferSize - 1))];
+        return ringBuffer.getDataLength(sequence);
+    }
+
+    public int getMaxMessageLength() {
+        return ringBuffer.getMaxRecordLength();
     }
 
-    public void connect() throws IOException {
+    //-- Dedicated busy poll thread, lowest latency but it burns a full core
+    public void connect(ThreadTopology threads) throws IOException {
+        open();
+        threads.start(ThreadRole.INGEST, "producer-" + type, this::readData);
+    }
+
+    //-- Shared ingest reactor, the channel is only read when the selector reports it readable
+    public void connect(IngestReactor reactor) throws IOException {
+        open();
+        reactor.register(this);
+    }
+
+    private void open() throws IOException {
         channel = SocketChannel.open(new InetSocketAddress("localhost", port));
         channel.configureBlocking(false);
-        new Thread(this::readData).start();
     }
 
     public void disconnect() {
@@ -60,7 +119,7 @@ public class Producer {
                 channel.close();
             }
         } catch (IOException e) {
-            logger.error(Producer.class, "Disconnect error: " + e.getMessage());
+            logger.error(Producer.class, "Disconnect error: {}", e.getMessage());
         }
     }
 
@@ -68,61 +127,187 @@ public class Producer {
         if (logger.isDebugEnabled()) {
             logger.debug(Producer.class, "Starting data read loop for " + type + " producer");
         }
-        int mask = bufferSize - 1;
-        ByteBuffer tempBuffer = ByteBuffer.allocate((int) Math.pow(2,10));
+        int idleCount = 0;
         try {
             while (channel.isOpen() && !Thread.interrupted()) {
-                tempBuffer.clear();
-                int bytesRead = channel.read(tempBuffer);
-                if (bytesRead > 0) {
-                    if (firstDataTime == -1) {
-                        firstDataTime = System.currentTimeMillis();
-                    }
-                    tempBuffer.flip();
-                    byte[] newData = new byte[tempBuffer.remaining()];
-                    tempBuffer.get(newData);
-
-                    // Append new data to accumulatedData
-                    byte[] combined = new byte[accumulatedData.length + newData.length];
-                    System.arraycopy(accumulatedData, 0, combined, 0, accumulatedData.length);
-                    System.arraycopy(newData, 0, combined, accumulatedData.length, newData.length);
-                    accumulatedData = combined;
-
-                    int start = 0;
-                    for (int i = 0; i < accumulatedData.length; i++) {
-                        if (accumulatedData[i] == ';') {
-                            int messageLength = i - start;
-                            if (messageLength > 0) {
-                                int nextSlot = (int) (sequencer.get() & mask);
-                                byte[] slot = ringBuffer[nextSlot];
-                                int copyLength = Math.min(messageLength, slot.length);
-                                System.arraycopy(accumulatedData, start, slot, 0, copyLength);
-                                lengths[nextSlot] = copyLength;
-                                sequencer.increment();
-                                if (logger.isDebugEnabled()) {
-                                    logger.debug(Producer.class, type + " sequence updated to: " + sequencer.get());
-                                }
-                            }
-                            start = i + 1;
-                        }
-                    }
-
-                    if (start < accumulatedData.length) {
-                        accumulatedData = Arrays.copyOfRange(accumulatedData, start, accumulatedData.length);
-                    } else {
-                        accumulatedData = new byte[0];
-                    }
-                } else if (bytesRead == -1) {
+                int bytesRead = read();
+                if (bytesRead == -1) {
                     break;
                 }
+                if (bytesRead > 0) {
+                    idleCount = 0;
+                } else {
+                    ingestWaitStrategy.idle(idleCount < Integer.MAX_VALUE ? ++idleCount : idleCount);
+                }
             }
         } catch (IOException e) {
-            logger.error(Producer.class, "Connection error with " + type + " producer: " + e.getMessage());
+            onReadError(e);
         } finally {
             disconnect();
         }
     }
 
+    //-- Invoked by the ingest reactor once the channel is readable, reads until the socket is drained
+    int drain() throws IOException {
+        int bytesRead;
+        do {
+            bytesRead = read();
+        } while (bytesRead > 0);
+        return bytesRead;
+    }
+
+    private int read() throws IOException {
+        int bytesRead = channel.read(readBuffer);
+        if (bytesRead > 0) {
+            onRead(bytesRead);
+        }
+        return bytesRead;
+    }
+
+    //-- Frames a chunk as if it had just been read off the channel, so the benchmarks can drive the producer without a socket
+    void receive(ByteBuffer chunk) {
+        int length = chunk.remaining();
+        readBuffer.put(chunk);
+        onRead(length);
+    }
+
+    private void onRead(int bytesRead) {
+        if (metrics != null) {
+            metrics.onRead(bytesRead);
+        }
+        if (firstDataTime == -1) {
+            firstDataTime = System.currentTimeMillis();
+        }
+        frameMessages();
+    }
+
+    void onReadError(IOException e) {
+        logger.error(Producer.class, "Connection error with {} producer: {}", type, e.getMessage());
+    }
+
+    /**
+     * Scans the read buffer in place for ';' delimited messages and copies each complete message
+     * straight into the next ring slot. The trailing partial message is compacted to the front of
+     * the buffer so the next read appends to it, hence no intermediate arrays are created.
+     */
+    private void frameMessages() {
+        readBuffer.flip();
+        //-- Every message framed from the same read arrived at the same time
+        long ingestNanos = System.nanoTime();
+        int end = readBuffer.limit();
+        int start = 0;
+        for (int i = scanPosition; i < end; i++) {
+            if (readBuffer.get(i) == ';') {
+                int messageLength = i - start;
+                if (messageLength > 0) {
+                    if (!keyedFeeds) {
+                        checkFeedSequence(start, i);
+                    }
+                    //-- Timed messages are stamped as they are published so readers can time the dispatch
+                    long timestamp = metrics != null ? System.nanoTime() : ingestNanos;
+                    if (columns != null) {
+                        decode(sequencer.get(), start, i, timestamp);
+                    }
+                    readBuffer.limit(i).position(start);
+                    ringBuffer.write(sequencer.get(), readBuffer, timestamp);
+                    readBuffer.limit(end);
+                    sequencer.increment();
+                    //-- Ingest ends once readers can see the message, not when it is stamped
+                    if (metrics != null) {
+                        metrics.record(Stage.INGEST, System.nanoTime() - ingestNanos);
+                    }
+                    if (logger.isDebugEnabled()) {
+                        logger.debug(Producer.class, type + " sequence updated to: " + sequencer.get());
+                    }
+                }
+                start = i + 1;
+            }
+        }
+
+        if (start > 0) {
+            signalReaders();
+        }
+
+        //-- Keep only the partial message, it has already been scanned for delimiters
+        readBuffer.position(start);
+        readBuffer.compact();
+        scanPosition = readBuffer.position();
+
+        //-- A message that does not fit in the read buffer can never be framed, drop it
+        if (!readBuffer.hasRemaining()) {
+            logger.error(Producer.class, "Dropping {} message larger than {} bytes", type, readBuffer.capacity());
+            readBuffer.clear();
+            scanPosition = 0;
+        }
+    }
+
+    //-- Parses the prices of the message in [start, end) straight out of the read buffer
+    private void decode(long sequence, int start, int end, long ingestNanos) {
+        //-- The leading field is the instrument of a keyed feed, otherwise a SequenceNo the ring does not need
+        int keyEnd = fieldEnd(start, end);
+        int symbolId = keyedFeeds ? symbolTable.getOrAdd(readBuffer, start, keyEnd) : SymbolTable.NO_SYMBOL;
+        int field = keyEnd + 1;
+        long bid = FixedPoint.NULL;
+        long offer = FixedPoint.NULL;
+        long last = FixedPoint.NULL;
+        if (type == ProducerType.BIDOFFER) {
+            int bidEnd = fieldEnd(field, end);
+            bid = FixedPoint.parse(readBuffer, field, bidEnd);
+            offer = FixedPoint.parse(readBuffer, bidEnd + 1, end);
+        } else {
+            last = FixedPoint.parse(readBuffer, field, end);
+        }
+        columns.write(sequence, symbolId, bid, offer, last, ingestNanos);
+    }
+
+    private void checkFeedSequence(int start, int end) {
+        long feedSequence = 0;
+        for (int i = start; i < end; i++) {
+            byte b = readBuffer.get(i);
+            if (b == ',') break;
+            if (b < '0' || b > '9') return;
+            feedSequence = feedSequence * 10 + (b - '0');
+        }
+        if (lastFeedSequence >= 0 && feedSequence > lastFeedSequence + 1) {
+            feedGaps++;
+            feedMessagesMissed += feedSequence - lastFeedSequence - 1;
+            logger.error(Producer.class, "{} feed skipped from SequenceNo {} to {}", type, lastFeedSequence, feedSequence);
+        }
+        lastFeedSequence = feedSequence;
+    }
+
+    private int fieldEnd(int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (readBuffer.get(i) == ',') {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    //-- Wakes readers sleeping in a blocking wait strategy, once per framed batch rather than per message
+    private void signalReaders() {
+        WaitStrategy[] readers = blockedReaders;
+        for (WaitStrategy reader : readers) {
+            reader.signal();
+        }
+    }
+
+    //-- Registers a reader that blocks while the ring is empty, copy on write as it is rare
+    public synchronized void addBlockingReader(WaitStrategy waitStrategy) {
+        WaitStrategy[] readers = Arrays.copyOf(blockedReaders, blockedReaders.length + 1);
+        readers[readers.length - 1] = waitStrategy;
+        blockedReaders = readers;
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    public ProducerType getType() {
+        return type;
+    }
+
     public Sequencer getSequencer() {
         return sequencer;
     }
@@ -132,9 +317,22 @@ public class Producer {
     }
 
     public void reset() {
-        Arrays.fill(lengths, 0);
+        ringBuffer.reset();
+        if (columns != null) {
+            columns.reset();
+        }
         sequencer.set(0);
-        accumulatedData = new byte[0];
+        readBuffer.clear();
+        scanPosition = 0;
+        lastFeedSequence = -1;
+    }
+
+    public long getFeedGaps() {
+        return feedGaps;
+    }
+
+    public long getFeedMessagesMissed() {
+        return feedMessagesMissed;
     }
 
     public long getFirstDataTime() {
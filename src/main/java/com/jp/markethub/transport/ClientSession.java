@@ -0,0 +1,285 @@
+package com.jp.markethub.transport;
+
+import com.jp.markethub.common.SymbolTable;
+import com.jp.markethub.log.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+
+/**
+ * A consumer connection together with its outbound state.
+ * <p>
+ * Writes never block. Whatever the socket does not accept right away is kept in a bounded outbound
+ * buffer and pushed out once the socket becomes writable again. Until then further messages are
+ * handled according to the {@link OverflowPolicy}, in particular a conflating client keeps only the
+ * newest message of every instrument, so a slow client never grows memory nor holds anyone back.
+ * The conflated messages sit back to back in a latest-value buffer in the order they first came in,
+ * a newer message about the same symbol id takes the place of the older one at the end.
+ * <p>
+ * A session is only ever written to from a single thread, the one publishing the feature or the fan-out
+ * shard owning the session. On a {@link SessionMode#THREAD_PER_CLIENT} port the session has a
+ * {@link SessionWriter} and its own thread instead.
+ * <p>
+ * Clients may send {@code SUB,<symbol>} and {@code UNSUB,<symbol>} lines to narrow down what they
+ * receive, those are read on the hub selector thread and handed to the {@link SubscriptionIndex}.
+ */
+public class ClientSession {
+    private static final byte[] SUBSCRIBE = "SUB,".getBytes();
+    private static final byte[] UNSUBSCRIBE = "UNSUB,".getBytes();
+
+    private final Logger logger = Logger.getInstance();
+    private final SocketChannel channel;
+    private final OverflowPolicy overflowPolicy;
+
+    //-- Both buffers are kept in write mode, pending bytes sit between 0 and position
+    private final ByteBuffer outbound;
+    private final ByteBuffer latest;
+    private final ByteBuffer latestView;
+    private final ByteBuffer[] gather = new ByteBuffer[2];
+    //-- Conflated message of every symbol id, offsets into latest in the order of latestSymbols, -1 when none
+    private int[] latestOffsets = new int[0];
+    private int[] latestLengths = new int[0];
+    private int[] latestSymbols = new int[16];
+    private int latestCount;
+
+    private SelectionKey writeKey;
+    private boolean awaitingWrite;
+    private long droppedMessages;
+    private int slot;
+    private volatile SessionWriter sessionWriter;
+
+    //-- Commands from the client, only touched by the hub selector thread
+    private final ByteBuffer inbound = ByteBuffer.allocate(256);
+
+    public ClientSession(SocketChannel channel, OverflowPolicy overflowPolicy, int outboundBufferSize) {
+        this.channel = channel;
+        this.overflowPolicy = overflowPolicy;
+        this.outbound = ByteBuffer.allocateDirect(outboundBufferSize);
+        this.latest = ByteBuffer.allocateDirect(overflowPolicy == OverflowPolicy.CONFLATE ? outboundBufferSize : 0);
+        this.latestView = latest.duplicate();
+    }
+
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Hands a message about the instrument of symbolId to the client, the message is consumed. Messages of
+     * an unkeyed feed all carry {@link SymbolTable#NO_SYMBOL}.
+     * Returns false when the outbound buffer overflowed and the client has to be disconnected.
+     */
+    public boolean offer(ByteBuffer message, int symbolId) throws IOException {
+        if (!hasPendingData()) {
+            channel.write(message);
+            if (message.hasRemaining()) {
+                outbound.put(message);
+            }
+            return true;
+        }
+
+        if (overflowPolicy == OverflowPolicy.CONFLATE) {
+            conflate(message, symbolId);
+            return true;
+        }
+        if (message.remaining() <= outbound.remaining()) {
+            outbound.put(message);
+            return true;
+        }
+        if (overflowPolicy == OverflowPolicy.DROP) {
+            countDropped();
+            return true;
+        }
+        return false;
+    }
+
+    private void conflate(ByteBuffer message, int symbolId) {
+        if (symbolId >= latestOffsets.length) {
+            int capacity = Math.max(latestOffsets.length * 2, symbolId + 1);
+            int known = latestOffsets.length;
+            latestOffsets = Arrays.copyOf(latestOffsets, capacity);
+            latestLengths = Arrays.copyOf(latestLengths, capacity);
+            Arrays.fill(latestOffsets, known, capacity, -1);
+        }
+        if (latestOffsets[symbolId] >= 0) {
+            removeLatest(symbolId);
+        }
+        if (message.remaining() > latest.remaining()) {
+            message.position(message.limit());
+            countDropped();
+            return;
+        }
+        if (latestCount == latestSymbols.length) {
+            latestSymbols = Arrays.copyOf(latestSymbols, latestCount * 2);
+        }
+        latestOffsets[symbolId] = latest.position();
+        latestLengths[symbolId] = message.remaining();
+        latestSymbols[latestCount++] = symbolId;
+        latest.put(message);
+    }
+
+    //-- Closes the gap the older message leaves, the messages after it move up
+    private void removeLatest(int symbolId) {
+        int offset = latestOffsets[symbolId];
+        int length = latestLengths[symbolId];
+        latestView.limit(latest.position()).position(offset + length);
+        latest.position(offset);
+        latest.put(latestView);
+        int index = 0;
+        while (latestSymbols[index] != symbolId) {
+            index++;
+        }
+        for (int i = index + 1; i < latestCount; i++) {
+            latestOffsets[latestSymbols[i]] -= length;
+            latestSymbols[i - 1] = latestSymbols[i];
+        }
+        latestCount--;
+        latestOffsets[symbolId] = -1;
+    }
+
+    /**
+     * Pushes out as much of the pending data as the socket accepts.
+     * Returns true once nothing is left waiting for this client.
+     */
+    public boolean flush() throws IOException {
+        if (latestCount == 0) {
+            outbound.flip();
+            channel.write(outbound);
+            outbound.compact();
+            return outbound.position() == 0;
+        }
+
+        //-- Queued bytes and the conflated messages go out in a single gathering write
+        outbound.flip();
+        latest.flip();
+        gather[0] = outbound;
+        gather[1] = latest;
+        channel.write(gather);
+        outbound.compact();
+        if (outbound.position() > 0) {
+            //-- The conflated messages were not started, they stay replaceable
+            latest.compact();
+            return false;
+        }
+        //-- Whatever part of the conflated messages did not make it must now complete first
+        outbound.put(latest);
+        latest.clear();
+        for (int i = 0; i < latestCount; i++) {
+            latestOffsets[latestSymbols[i]] = -1;
+        }
+        latestCount = 0;
+        return outbound.position() == 0;
+    }
+
+    /**
+     * Reads the commands the client sent and queues the subscription changes.
+     * Returns -1 once the client has closed its side of the connection.
+     */
+    public int readCommands(SymbolTable symbolTable, SubscriptionIndex subscriptions) throws IOException {
+        int bytesRead = channel.read(inbound);
+        if (bytesRead <= 0) {
+            return bytesRead;
+        }
+        byte[] commands = inbound.array();
+        int end = inbound.position();
+        int start = 0;
+        for (int i = 0; i < end; i++) {
+            if (commands[i] == '\n') {
+                int lineEnd = i > start && commands[i - 1] == '\r' ? i - 1 : i;
+                onCommand(commands, start, lineEnd, symbolTable, subscriptions);
+                start = i + 1;
+            }
+        }
+        //-- Keep a partial command for the next read
+        inbound.flip();
+        inbound.position(start);
+        inbound.compact();
+        if (!inbound.hasRemaining()) {
+            logger.error(ClientSession.class, "Discarding command longer than {} bytes from {}", inbound.capacity(), this);
+            inbound.clear();
+        }
+        return bytesRead;
+    }
+
+    private void onCommand(byte[] line, int start, int end, SymbolTable symbolTable, SubscriptionIndex subscriptions) {
+        if (startsWith(line, start, end, SUBSCRIBE)) {
+            subscriptions.subscribe(this, symbolTable.getOrAdd(line, start + SUBSCRIBE.length, end));
+        } else if (startsWith(line, start, end, UNSUBSCRIBE)) {
+            int symbolId = symbolTable.lookup(line, start + UNSUBSCRIBE.length, end);
+            if (symbolId != SymbolTable.NO_SYMBOL) {
+                subscriptions.unsubscribe(this, symbolId);
+            }
+        } else if (end > start) {
+            logger.error(ClientSession.class, "Unknown command [ {} ] from {}", new String(line, start, end - start), this);
+        }
+    }
+
+    private static boolean startsWith(byte[] line, int start, int end, byte[] prefix) {
+        if (end - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (line[start + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean hasPendingData() {
+        return outbound.position() > 0 || latestCount > 0;
+    }
+
+    SelectionKey getWriteKey() {
+        return writeKey;
+    }
+
+    void setWriteKey(SelectionKey writeKey) {
+        this.writeKey = writeKey;
+    }
+
+    boolean isAwaitingWrite() {
+        return awaitingWrite;
+    }
+
+    void setAwaitingWrite(boolean awaitingWrite) {
+        this.awaitingWrite = awaitingWrite;
+    }
+
+    //-- Position of the client in the routing bitsets of its port
+    public int getSlot() {
+        return slot;
+    }
+
+    void setSlot(int slot) {
+        this.slot = slot;
+    }
+
+    void countDropped() {
+        droppedMessages++;
+    }
+
+    //-- Thread per client ports only, the writer of the session
+    SessionWriter getSessionWriter() {
+        return sessionWriter;
+    }
+
+    void setSessionWriter(SessionWriter sessionWriter) {
+        this.sessionWriter = sessionWriter;
+    }
+
+    public long getDroppedMessages() {
+        return droppedMessages;
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return "ClientSession[" + channel + "]";
+    }
+}
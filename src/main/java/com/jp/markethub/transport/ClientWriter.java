@@ -0,0 +1,122 @@
+package com.jp.markethub.transport;
+
+import com.jp.markethub.consumer.ConsumerManager;
+import com.jp.markethub.log.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+
+/**
+ * Writes messages to the clients of one publishing thread without ever blocking on a socket.
+ * <p>
+ * A client that only partially accepts a write gets the rest queued in its {@link ClientSession} and is
+ * registered for OP_WRITE on a selector private to this writer, which is polled, never blocked on, by
+ * the owning thread. Every client must only ever be written to through a single writer.
+ */
+final class ClientWriter {
+    private final Logger logger = Logger.getInstance();
+    private Selector writeSelector;
+    private int backloggedClients;
+
+    /**
+     * Offers the bytes of message from start to its limit, about the instrument of symbolId, to the client,
+     * the position of message is left at its limit. Returns false when the client had to be disconnected.
+     */
+    boolean offer(ConsumerManager consumerManager, ClientSession client, ByteBuffer message, int start, int symbolId) {
+        try {
+            message.position(start);
+            if (!client.offer(message, symbolId)) {
+                logger.error(ClientWriter.class, "Outbound buffer overflow, disconnecting slow client {}", client);
+                disconnect(consumerManager, client);
+                return false;
+            }
+            if (client.hasPendingData()) {
+                awaitWritable(client);
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug(ClientWriter.class, "Published " + (message.limit() - start) + " bytes to [ " + client + " ]");
+            }
+            return true;
+        } catch (IOException e) {
+            logger.error(ClientWriter.class, "Failed to write to client: {}", e.getMessage());
+            disconnect(consumerManager, client);
+            return false;
+        }
+    }
+
+    boolean hasBacklog() {
+        return backloggedClients > 0;
+    }
+
+    private void awaitWritable(ClientSession client) throws IOException {
+        if (client.isAwaitingWrite()) {
+            return;
+        }
+        if (writeSelector == null) {
+            writeSelector = Selector.open();
+        }
+        SelectionKey key = client.getWriteKey();
+        if (key == null) {
+            client.setWriteKey(client.getChannel().register(writeSelector, SelectionKey.OP_WRITE, client));
+        } else {
+            key.interestOps(SelectionKey.OP_WRITE);
+        }
+        client.setAwaitingWrite(true);
+        backloggedClients++;
+    }
+
+    //-- Polls the write selector and pushes pending data to every client whose socket drained
+    void flushWritableClients(ConsumerManager consumerManager) {
+        try {
+            if (writeSelector.selectNow() == 0) {
+                return;
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            logger.error(ClientWriter.class, "Write selector error: {}", e.getMessage());
+            return;
+        }
+        Iterator<SelectionKey> keys = writeSelector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            ClientSession client = (ClientSession) key.attachment();
+            try {
+                if (key.isValid() && client.flush()) {
+                    key.interestOps(0);
+                    client.setAwaitingWrite(false);
+                    backloggedClients--;
+                }
+            } catch (IOException e) {
+                logger.error(ClientWriter.class, "Failed to write to client: {}", e.getMessage());
+                disconnect(consumerManager, client);
+            }
+        }
+    }
+
+    private void disconnect(ConsumerManager consumerManager, ClientSession client) {
+        if (client.isAwaitingWrite()) {
+            client.setAwaitingWrite(false);
+            backloggedClients--;
+        }
+        consumerManager.removeClient(client.getChannel());
+        try {
+            client.close();
+        } catch (IOException ex) {
+            logger.error(ClientWriter.class, "Error closing client: {}", ex.getMessage());
+        }
+    }
+
+    void close() {
+        try {
+            if (writeSelector != null) {
+                writeSelector.close();
+            }
+        } catch (IOException e) {
+            logger.error(ClientWriter.class, "Error closing write selector: {}", e.getMessage());
+        }
+    }
+}
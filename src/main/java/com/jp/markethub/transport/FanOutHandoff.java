@@ -0,0 +1,197 @@
+package com.jp.markethub.transport;
+
+import com.jp.markethub.common.Sequencer;
+import com.jp.markethub.common.SymbolTable;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Hands every outbound message of a port from the feature thread to its fan-out shards.
+ * <p>
+ * The feature thread is the single writer, it copies a message once into an off-heap slab and publishes
+ * its sequence, every shard then reads it through its own view with its own cursor. Nothing is ever
+ * overwritten before the slowest shard is done with it, the writer waits for room instead, which is
+ * short lived as shards never block on a socket. Entries also carry who a message goes to, so routing
+ * decisions taken by the feature thread and clients joining the fan-out keep their order.
+ */
+final class FanOutHandoff {
+    static final byte BROADCAST = 0;
+    //-- Only to the clients whose slot is set in the bitset copied along with the message
+    static final byte ROUTED = 1;
+    //-- Only to the target client, used for snapshots
+    static final byte DIRECT = 2;
+    //-- The target client has had its snapshot and joins the fan-out, no payload
+    static final byte ADMIT = 3;
+
+    private final ByteBuffer slab;
+    //-- The writer copies messages in through a view of its own
+    private final ByteBuffer writerView;
+    private final int capacity;
+    private final int mask;
+    private final long[] positions;
+    private final int[] lengths;
+    private final byte[] kinds;
+    private final int[] symbolIds;
+    private final ClientSession[] targets;
+    private final long[][] routes;
+    private final int[] routeWords;
+
+    private final Sequencer published = new Sequencer();
+    private final Sequencer[] consumed;
+    private long writePosition;
+    private volatile boolean closed;
+
+    FanOutHandoff(int slots, int capacity, int shards) {
+        if (Integer.bitCount(slots) != 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Fan-out handoff slots and capacity must be power-of-two");
+        }
+        this.slab = ByteBuffer.allocateDirect(capacity);
+        this.writerView = slab.duplicate();
+        this.capacity = capacity;
+        this.mask = slots - 1;
+        this.positions = new long[slots];
+        this.lengths = new int[slots];
+        this.kinds = new byte[slots];
+        this.symbolIds = new int[slots];
+        this.targets = new ClientSession[slots];
+        this.routes = new long[slots][];
+        this.routeWords = new int[slots];
+        this.consumed = new Sequencer[shards];
+        for (int i = 0; i < shards; i++) {
+            consumed[i] = new Sequencer();
+        }
+    }
+
+    //-- Writer thread only, the remaining bytes of message are consumed
+    void broadcast(ByteBuffer message, int symbolId) {
+        if (claim(BROADCAST, null, message, symbolId) >= 0) {
+            published.increment();
+        }
+    }
+
+    //-- Takes a copy of the clients the subscriptions route the symbol to as of now
+    void route(ByteBuffer message, SubscriptionIndex subscriptions, int symbolId) {
+        int slot = claim(ROUTED, null, message, symbolId);
+        if (slot < 0) {
+            return;
+        }
+        int words = subscriptions.getWordCount();
+        long[] route = routes[slot];
+        if (route == null || route.length < words) {
+            route = new long[words];
+            routes[slot] = route;
+        }
+        for (int word = 0; word < words; word++) {
+            route[word] = subscriptions.getInterested(symbolId, word);
+        }
+        routeWords[slot] = words;
+        published.increment();
+    }
+
+    void direct(ClientSession client, ByteBuffer message, int symbolId) {
+        if (claim(DIRECT, client, message, symbolId) >= 0) {
+            published.increment();
+        }
+    }
+
+    void admit(ClientSession client) {
+        if (claim(ADMIT, client, null, SymbolTable.NO_SYMBOL) >= 0) {
+            published.increment();
+        }
+    }
+
+    //-- Waits for room and fills in the next entry, returns its slot or -1 once the shards are gone
+    private int claim(byte kind, ClientSession target, ByteBuffer message, int symbolId) {
+        long sequence = published.get();
+        int length = message == null ? 0 : message.remaining();
+        long position = writePosition;
+        int offset = (int) (position & (capacity - 1));
+        if (offset + length > capacity) {
+            //-- An entry never straddles the end of the slab, start over from the beginning
+            position += capacity - offset;
+            offset = 0;
+        }
+        while (!hasRoom(sequence, position + length)) {
+            if (closed) {
+                return -1;
+            }
+            Thread.yield();
+        }
+
+        int slot = (int) (sequence & mask);
+        if (message != null) {
+            writerView.limit(offset + length).position(offset);
+            writerView.put(message);
+        }
+        positions[slot] = position;
+        lengths[slot] = length;
+        kinds[slot] = kind;
+        symbolIds[slot] = symbolId;
+        targets[slot] = target;
+        writePosition = position + length;
+        return slot;
+    }
+
+    //-- Neither the slot nor the bytes up to end may still be unread by any shard
+    private boolean hasRoom(long sequence, long end) {
+        for (Sequencer shard : consumed) {
+            long next = shard.get();
+            if (sequence - next > mask) {
+                return false;
+            }
+            if (next < sequence && end - positions[(int) (next & mask)] > capacity) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //-- Reader side, only valid for sequences below getPublished() the reader has not released yet
+    long getPublished() {
+        return published.get();
+    }
+
+    byte getKind(long sequence) {
+        return kinds[(int) (sequence & mask)];
+    }
+
+    int getSymbolId(long sequence) {
+        return symbolIds[(int) (sequence & mask)];
+    }
+
+    ClientSession getTarget(long sequence) {
+        return targets[(int) (sequence & mask)];
+    }
+
+    int getRouteWords(long sequence) {
+        return routeWords[(int) (sequence & mask)];
+    }
+
+    long getRoute(long sequence, int word) {
+        return routes[(int) (sequence & mask)][word];
+    }
+
+    int getOffset(long sequence) {
+        return (int) (positions[(int) (sequence & mask)] & (capacity - 1));
+    }
+
+    int getLength(long sequence) {
+        return lengths[(int) (sequence & mask)];
+    }
+
+    //-- Every reader reads the slab through a view of its own
+    ByteBuffer newView() {
+        return slab.duplicate();
+    }
+
+    //-- The shard is done with every sequence below next
+    void release(int shard, long next) {
+        consumed[shard].set(next);
+    }
+
+    //-- The writer stops waiting for room once the shards are gone
+    void close() {
+        closed = true;
+    }
+}
@@ -0,0 +1,170 @@
+package com.jp.markethub.transport;
+
+import com.jp.markethub.common.thread.ThreadRole;
+import com.jp.markethub.common.thread.ThreadTopology;
+import com.jp.markethub.common.wait.WaitStrategy;
+import com.jp.markethub.consumer.ConsumerManager;
+import com.jp.markethub.log.Logger;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One of the threads fanning the messages of a port out, it owns every client whose slot modulo the
+ * number of shards is its index and reads the {@link FanOutHandoff} with a cursor of its own.
+ * The clients of a shard are only ever touched by its thread once they have been admitted.
+ */
+final class FanOutShard implements Runnable {
+    private final Logger logger = Logger.getInstance();
+    private final int index;
+    private final int shardCount;
+    private final FanOutHandoff handoff;
+    private final ConsumerManager consumerManager;
+    private final WaitStrategy waitStrategy;
+    private final ClientWriter writer = new ClientWriter();
+    private final ByteBuffer view;
+
+    //-- Owned by the shard thread
+    private final List<ClientSession> clients = new ArrayList<>();
+    private ClientSession[] clientsBySlot = new ClientSession[64];
+
+    private volatile boolean running = true;
+    private Thread thread;
+
+    FanOutShard(int index, int shardCount, FanOutHandoff handoff, ConsumerManager consumerManager, WaitStrategy waitStrategy) {
+        this.index = index;
+        this.shardCount = shardCount;
+        this.handoff = handoff;
+        this.consumerManager = consumerManager;
+        this.waitStrategy = waitStrategy;
+        this.view = handoff.newView();
+    }
+
+    void start(ThreadTopology threads, String name) {
+        thread = threads.start(ThreadRole.FAN_OUT, name, this);
+    }
+
+    //-- Publishing thread, which shard a client belongs to never changes
+    boolean owns(ClientSession client) {
+        return client.getSlot() % shardCount == index;
+    }
+
+    @Override
+    public void run() {
+        if (logger.isDebugEnabled()) {
+            logger.debug(FanOutShard.class, "Starting fan-out shard " + index + " of " + shardCount);
+        }
+        long next = 0;
+        int idleCount = 0;
+        while (running) {
+            long available = handoff.getPublished();
+            if (next < available) {
+                //-- Give clients that drained since the last pass a chance to catch up first
+                if (writer.hasBacklog()) {
+                    writer.flushWritableClients(consumerManager);
+                }
+                for (; next < available; next++) {
+                    deliver(next);
+                }
+                handoff.release(index, next);
+                idleCount = 0;
+                continue;
+            }
+            if (writer.hasBacklog()) {
+                writer.flushWritableClients(consumerManager);
+            }
+            waitStrategy.idle(idleCount < Integer.MAX_VALUE ? ++idleCount : idleCount);
+        }
+        writer.close();
+    }
+
+    private void deliver(long sequence) {
+        byte kind = handoff.getKind(sequence);
+        if (kind == FanOutHandoff.ADMIT) {
+            ClientSession client = handoff.getTarget(sequence);
+            if (owns(client)) {
+                admit(client);
+            }
+            return;
+        }
+
+        int start = handoff.getOffset(sequence);
+        int symbolId = handoff.getSymbolId(sequence);
+        view.limit(start + handoff.getLength(sequence));
+        if (kind == FanOutHandoff.DIRECT) {
+            ClientSession client = handoff.getTarget(sequence);
+            if (owns(client)) {
+                writer.offer(consumerManager, client, view, start, symbolId);
+            }
+        } else if (kind == FanOutHandoff.BROADCAST) {
+            for (int i = clients.size() - 1; i >= 0; i--) {
+                ClientSession client = clients.get(i);
+                if (!writer.offer(consumerManager, client, view, start, symbolId)) {
+                    drop(i, client);
+                }
+            }
+        } else {
+            route(sequence, start, symbolId);
+        }
+    }
+
+    //-- Only walks the slots of this shard whose bit is set
+    private void route(long sequence, int start, int symbolId) {
+        for (int word = 0; word < handoff.getRouteWords(sequence); word++) {
+            long interested = handoff.getRoute(sequence, word);
+            while (interested != 0) {
+                int slot = (word << 6) + Long.numberOfTrailingZeros(interested);
+                interested &= interested - 1;
+                ClientSession client = slot % shardCount == index && slot < clientsBySlot.length ? clientsBySlot[slot] : null;
+                if (client != null && !writer.offer(consumerManager, client, view, start, symbolId)) {
+                    drop(clients.indexOf(client), client);
+                }
+            }
+        }
+    }
+
+    private void admit(ClientSession client) {
+        int slot = client.getSlot();
+        if (slot >= clientsBySlot.length) {
+            clientsBySlot = Arrays.copyOf(clientsBySlot, Math.max(clientsBySlot.length * 2, slot + 1));
+        }
+        //-- A slot is only reused once its previous client has gone
+        ClientSession previous = clientsBySlot[slot];
+        if (previous != null) {
+            clients.remove(previous);
+        }
+        clientsBySlot[slot] = client;
+        clients.add(client);
+    }
+
+    private void drop(int position, ClientSession client) {
+        if (position >= 0) {
+            clients.remove(position);
+        }
+        if (clientsBySlot[client.getSlot()] == client) {
+            clientsBySlot[client.getSlot()] = null;
+        }
+    }
+
+    void close() {
+        running = false;
+        waitStrategy.signal();
+        if (thread != null) {
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    void signal() {
+        waitStrategy.signal();
+    }
+
+    boolean isBlocking() {
+        return waitStrategy.isBlocking();
+    }
+}
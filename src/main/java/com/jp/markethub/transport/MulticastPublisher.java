@@ -0,0 +1,172 @@
+package com.jp.markethub.transport;
+
+import com.jp.markethub.common.RingBuffer;
+import com.jp.markethub.common.Sequencer;
+import com.jp.markethub.common.thread.ThreadRole;
+import com.jp.markethub.common.thread.ThreadTopology;
+import com.jp.markethub.config.MarketHubConfig;
+import com.jp.markethub.log.Logger;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Publishes every feature message once as a UDP multicast datagram, so the cost of a publish no
+ * longer depends on the number of listeners.
+ * <p>
+ * Every datagram starts with a header of the transport sequence (8 bytes) and the payload length
+ * (4 bytes). The last datagrams are kept in a {@link RingBuffer} and a listener that detects a gap
+ * can ask for it again by sending {@code [fromSequence][toSequence)} as two longs to the retransmit
+ * port. The missing datagrams are sent back to the requester unchanged, a sequence that is no longer
+ * available is answered with a header whose length is {@link #UNAVAILABLE}.
+ */
+public class MulticastPublisher implements TransportContract {
+    public static final int HEADER_LENGTH = 12;
+    public static final int UNAVAILABLE = -1;
+    private static final int REQUEST_LENGTH = 16;
+
+    private final Logger logger = Logger.getInstance();
+    private final MarketHubConfig config;
+    private final ThreadTopology threads;
+    private final int port;
+    private final int maxDatagramLength;
+
+    private final ByteBuffer datagram;
+    private final RingBuffer retransmitBuffer;
+    private final Sequencer published = new Sequencer();
+    private long sequence;
+
+    private DatagramChannel channel;
+    private DatagramChannel retransmitChannel;
+    private SocketAddress group;
+    private volatile boolean running = true;
+
+    public MulticastPublisher(MarketHubConfig config, ThreadTopology threads) {
+        this.config = config;
+        this.threads = threads;
+        this.port = config.getMulticastPort();
+        this.maxDatagramLength = config.getMaxDatagramLength();
+        this.datagram = ByteBuffer.allocateDirect(maxDatagramLength);
+        this.retransmitBuffer = new RingBuffer(config.getRetransmitBufferSize(), config.getRetransmitBufferCapacity(), maxDatagramLength);
+    }
+
+    @Override
+    public void start() throws IOException {
+        NetworkInterface networkInterface = NetworkInterface.getByName(config.getMulticastInterface());
+        group = new InetSocketAddress(InetAddress.getByName(config.getMulticastGroup()), port);
+
+        channel = DatagramChannel.open(StandardProtocolFamily.INET);
+        channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, networkInterface);
+        channel.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+        channel.setOption(StandardSocketOptions.IP_MULTICAST_TTL, config.getMulticastTtl());
+
+        retransmitChannel = DatagramChannel.open(StandardProtocolFamily.INET);
+        retransmitChannel.bind(new InetSocketAddress(config.getRetransmitPort()));
+        threads.start(ThreadRole.SERVICE, "multicast-retransmit-" + port, this::serveRetransmits);
+
+        if (logger.isDebugEnabled()) {
+            logger.debug(getClass(), "Publishing to multicast group " + group + " on " + networkInterface);
+        }
+    }
+
+    @Override
+    public void publish(byte[] data, int length) {
+        if (length > maxDatagramLength - HEADER_LENGTH) {
+            logger.error(getClass(), "Dropping message of {} bytes, larger than a datagram", length);
+            return;
+        }
+        datagram.clear();
+        datagram.putLong(sequence);
+        datagram.putInt(length);
+        datagram.put(data, 0, length);
+        datagram.flip();
+        try {
+            channel.send(datagram, group);
+        } catch (IOException e) {
+            logger.error(getClass(), "Failed to send datagram {}: {}", sequence, e.getMessage());
+        }
+
+        //-- Keep it for retransmission even if the send failed, listeners will ask for the gap
+        datagram.rewind();
+        retransmitBuffer.write(sequence, datagram);
+        published.increment();
+        sequence++;
+    }
+
+    private void serveRetransmits() {
+        ByteBuffer request = ByteBuffer.allocate(REQUEST_LENGTH);
+        byte[] record = new byte[maxDatagramLength];
+        ByteBuffer response = ByteBuffer.wrap(record);
+        ByteBuffer retransmitView = retransmitBuffer.newReadView();
+        ByteBuffer unavailable = ByteBuffer.allocate(HEADER_LENGTH);
+        try {
+            while (running) {
+                request.clear();
+                SocketAddress requester = retransmitChannel.receive(request);
+                if (request.position() < REQUEST_LENGTH) {
+                    continue;
+                }
+                request.flip();
+                long from = request.getLong();
+                long to = Math.min(request.getLong(), published.get());
+                for (long seq = Math.max(from, to - config.getRetransmitBufferSize()); seq < to; seq++) {
+                    int length = retransmitBuffer.getData(seq, record, retransmitView);
+                    if (length > 0) {
+                        response.clear();
+                        response.limit(length);
+                        retransmitChannel.send(response, requester);
+                    } else {
+                        unavailable.clear();
+                        unavailable.putLong(seq).putInt(UNAVAILABLE).flip();
+                        retransmitChannel.send(unavailable, requester);
+                    }
+                }
+            }
+        } catch (ClosedChannelException e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug(getClass(), "Retransmit service stopped");
+            }
+        } catch (IOException e) {
+            logger.error(getClass(), "Retransmit service error: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public Integer getPort() {
+        return port;
+    }
+
+    //-- Connectionless, the hub never hands it a client, one that shows up anyway is turned away
+    @Override
+    public boolean send(ClientSession client, int symbolId, byte[] data, int length) {
+        return false;
+    }
+
+    @Override
+    public boolean acceptsConnections() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+            if (retransmitChannel != null) {
+                retransmitChannel.close();
+            }
+        } catch (IOException e) {
+            logger.error(getClass(), "Error closing multicast channels: {}", e.getMessage());
+        }
+    }
+}
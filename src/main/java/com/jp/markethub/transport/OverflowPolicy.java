@@ -0,0 +1,11 @@
+package com.jp.markethub.transport;
+
+//-- What TcpPublisher does with a message for a client whose socket is still backed up
+public enum OverflowPolicy {
+    //-- Queue in the bounded outbound buffer, close the client once the buffer is full
+    DISCONNECT,
+    //-- Keep only the latest message until the socket drains
+    CONFLATE,
+    //-- Queue in the bounded outbound buffer, drop new messages once the buffer is full
+    DROP
+}
@@ -0,0 +1,9 @@
+package com.jp.markethub.transport;
+
+public enum PublishMode {
+    //-- Every message is written to every client as soon as it is published, lowest latency
+    IMMEDIATE,
+    //-- Messages are packed into one buffer and written per client at the end of a batch,
+    //-- when the buffer fills or once the micro-batch window elapses, highest throughput
+    COALESCE
+}
@@ -0,0 +1,9 @@
+package com.jp.markethub.transport;
+
+public enum SessionMode {
+    //-- The feature thread, or the fan-out shards, write to every client of the port without blocking
+    NON_BLOCKING,
+    //-- Every client gets a thread of its own, virtual on Java 21, writing from a per client queue,
+    //-- meant for ports with many idle or slow clients such as dashboards
+    THREAD_PER_CLIENT
+}
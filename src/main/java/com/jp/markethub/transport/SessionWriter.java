@@ -0,0 +1,147 @@
+package com.jp.markethub.transport;
+
+import com.jp.markethub.common.thread.ThreadTopology;
+import com.jp.markethub.consumer.ConsumerManager;
+import com.jp.markethub.log.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes to a single client of a {@link SessionMode#THREAD_PER_CLIENT} port from a thread of its own.
+ * <p>
+ * The publishing thread copies every message into a bounded byte ring private to the session and the
+ * session thread writes it out in a plain loop, parking while the ring is empty or the socket is backed
+ * up. The channel stays non blocking as the hub selector reads the commands of the client from it, on a
+ * virtual thread parking between partial writes costs no more than blocking in the socket would.
+ * A full ring drops the new message unless the overflow policy is {@link OverflowPolicy#DISCONNECT}.
+ */
+final class SessionWriter implements Runnable {
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    //-- An idle session still looks at its channel now and then, in case its removal was missed
+    private static final long IDLE_CHECK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Logger logger = Logger.getInstance();
+    private final ClientSession client;
+    private final ConsumerManager consumerManager;
+    private final boolean disconnectOnOverflow;
+    private final int capacity;
+    private final int mask;
+    //-- Each side works on a view of its own of the same ring
+    private final ByteBuffer publisherView;
+    private final ByteBuffer sessionView;
+
+    //-- Bytes ever queued, written by the publishing thread, and ever written out, by the session thread
+    private volatile long tail;
+    private volatile long head;
+    private volatile boolean parked;
+    private volatile boolean running = true;
+    private volatile Thread thread;
+
+    SessionWriter(ClientSession client, ConsumerManager consumerManager, OverflowPolicy overflowPolicy, int queueSize) {
+        if (Integer.bitCount(queueSize) != 1) {
+            throw new IllegalArgumentException("Session queue size must be a power of two");
+        }
+        this.client = client;
+        this.consumerManager = consumerManager;
+        this.disconnectOnOverflow = overflowPolicy == OverflowPolicy.DISCONNECT;
+        this.capacity = queueSize;
+        this.mask = queueSize - 1;
+        ByteBuffer ring = ByteBuffer.allocateDirect(queueSize);
+        this.publisherView = ring.duplicate();
+        this.sessionView = ring.duplicate();
+    }
+
+    void start(ThreadTopology threads, String name) {
+        thread = threads.startSession(name, this);
+    }
+
+    /**
+     * Publishing thread, queues the bytes of message from its position to its limit, which it is left at.
+     * Returns false when the client overflowed and has been disconnected.
+     */
+    boolean offer(ByteBuffer message) {
+        int length = message.remaining();
+        if (length > capacity - (tail - head)) {
+            message.position(message.limit());
+            if (disconnectOnOverflow) {
+                logger.error(SessionWriter.class, "Session queue overflow, disconnecting slow client {}", client);
+                disconnect();
+                return false;
+            }
+            client.countDropped();
+            return true;
+        }
+        long position = tail;
+        int offset = (int) (position & mask);
+        int first = Math.min(length, capacity - offset);
+        int limit = message.limit();
+        message.limit(message.position() + first);
+        publisherView.limit(offset + first).position(offset);
+        publisherView.put(message);
+        message.limit(limit);
+        if (first < length) {
+            publisherView.limit(length - first).position(0);
+            publisherView.put(message);
+        }
+        tail = position + length;
+        if (parked) {
+            LockSupport.unpark(thread);
+        }
+        return true;
+    }
+
+    @Override
+    public void run() {
+        long backoff = 0;
+        try {
+            while (running && client.getChannel().isOpen()) {
+                long position = head;
+                long available = tail - position;
+                if (available == 0) {
+                    parked = true;
+                    //-- Checked again once parked is visible, so an offer in between is not missed
+                    if (tail == position && running) {
+                        LockSupport.parkNanos(this, IDLE_CHECK_NANOS);
+                    }
+                    parked = false;
+                    continue;
+                }
+                int offset = (int) (position & mask);
+                sessionView.limit(offset + (int) Math.min(available, capacity - offset)).position(offset);
+                int written = client.getChannel().write(sessionView);
+                if (written > 0) {
+                    head = position + written;
+                    backoff = 0;
+                } else {
+                    //-- The socket is backed up, wait for the client to catch up
+                    backoff = Math.min(MAX_BACKOFF_NANOS, Math.max(1000, backoff * 2));
+                    LockSupport.parkNanos(this, backoff);
+                }
+            }
+        } catch (IOException e) {
+            if (running) {
+                logger.error(SessionWriter.class, "Failed to write to client: {}", e.getMessage());
+                disconnect();
+            }
+        }
+    }
+
+    private void disconnect() {
+        close();
+        consumerManager.removeClient(client.getChannel());
+        try {
+            client.close();
+        } catch (IOException e) {
+            logger.error(SessionWriter.class, "Error closing client: {}", e.getMessage());
+        }
+    }
+
+    //-- Any thread, the session thread ends once it sees the flag
+    void close() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+}
@@ -0,0 +1,213 @@
+package com.jp.markethub.transport;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Routing index of a port, for every symbol a bitset over the slots of the clients subscribed to it.
+ * A message is then only offered to the clients whose bit is set, plus the clients that never
+ * subscribed to anything, which keep receiving every message.
+ * <p>
+ * Subscriptions arrive on the hub selector thread and clients come and go on any thread, so changes
+ * are queued and applied by the publishing thread, the only thread that ever reads or writes the index.
+ * <p>
+ * A client is added as soon as it connects, so the subscriptions it sends right away are kept, but no
+ * message is routed to it before it is admitted, once the publishing thread has sent it its snapshot.
+ */
+public class SubscriptionIndex {
+    private static final int ADD = 0;
+    private static final int REMOVE = 1;
+    private static final int SUBSCRIBE = 2;
+    private static final int UNSUBSCRIBE = 3;
+    private static final int ADMIT = 4;
+
+    private static final class Request {
+        final int type;
+        final ClientSession session;
+        final int symbolId;
+
+        Request(int type, ClientSession session, int symbolId) {
+            this.type = type;
+            this.session = session;
+            this.symbolId = symbolId;
+        }
+    }
+
+    private final Queue<Request> requests = new ConcurrentLinkedQueue<>();
+
+    //-- Slot allocation, guarded by this
+    private int[] freeSlots = new int[64];
+    private int freeCount;
+    private int nextSlot;
+
+    //-- Owned by the publishing thread
+    private ClientSession[] sessions = new ClientSession[64];
+    private int[] subscriptionCounts = new int[64];
+    private long[] unfiltered = new long[1];
+    private long[] admitted = new long[1];
+    private long[][] clientsBySymbol = new long[1024][];
+    //-- Volatile only so other threads can tell whether subscriptions are in effect
+    private volatile int filteredClients;
+
+    //-- Any thread, gives the client its slot right away so requests can refer to it
+    public void add(ClientSession session) {
+        session.setSlot(allocateSlot());
+        requests.add(new Request(ADD, session, 0));
+    }
+
+    //-- Publishing thread, once the client has had its snapshot
+    public void admit(ClientSession session) {
+        requests.add(new Request(ADMIT, session, 0));
+    }
+
+    public void remove(ClientSession session) {
+        requests.add(new Request(REMOVE, session, 0));
+    }
+
+    public void subscribe(ClientSession session, int symbolId) {
+        requests.add(new Request(SUBSCRIBE, session, symbolId));
+    }
+
+    public void unsubscribe(ClientSession session, int symbolId) {
+        requests.add(new Request(UNSUBSCRIBE, session, symbolId));
+    }
+
+    private synchronized int allocateSlot() {
+        return freeCount > 0 ? freeSlots[--freeCount] : nextSlot++;
+    }
+
+    private synchronized void releaseSlot(int slot) {
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    //-- Publishing thread only, applies every queued change
+    public void apply() {
+        Request request;
+        while ((request = requests.poll()) != null) {
+            int slot = request.session.getSlot();
+            if (request.type == ADD) {
+                addSession(request.session, slot);
+                continue;
+            }
+            //-- The client is gone and its slot may already belong to someone else
+            if (slot >= sessions.length || sessions[slot] != request.session) {
+                continue;
+            }
+            if (request.type == REMOVE) {
+                removeSession(slot);
+            } else if (request.type == ADMIT) {
+                setBit(admitted, slot);
+            } else if (request.type == SUBSCRIBE) {
+                subscribe(slot, request.symbolId);
+            } else {
+                unsubscribe(slot, request.symbolId);
+            }
+        }
+    }
+
+    private void addSession(ClientSession session, int slot) {
+        if (slot >= sessions.length) {
+            int capacity = Math.max(sessions.length * 2, slot + 1);
+            sessions = Arrays.copyOf(sessions, capacity);
+            subscriptionCounts = Arrays.copyOf(subscriptionCounts, capacity);
+            unfiltered = Arrays.copyOf(unfiltered, (capacity + 63) >>> 6);
+            admitted = Arrays.copyOf(admitted, unfiltered.length);
+        }
+        sessions[slot] = session;
+        subscriptionCounts[slot] = 0;
+        setBit(unfiltered, slot);
+    }
+
+    private void removeSession(int slot) {
+        if (subscriptionCounts[slot] > 0) {
+            for (long[] clients : clientsBySymbol) {
+                if (clients != null && (slot >>> 6) < clients.length) {
+                    clearBit(clients, slot);
+                }
+            }
+            filteredClients--;
+        }
+        clearBit(unfiltered, slot);
+        clearBit(admitted, slot);
+        sessions[slot] = null;
+        subscriptionCounts[slot] = 0;
+        releaseSlot(slot);
+    }
+
+    private void subscribe(int slot, int symbolId) {
+        long[] clients = clients(symbolId);
+        if (isSet(clients, slot)) {
+            return;
+        }
+        setBit(clients, slot);
+        if (subscriptionCounts[slot]++ == 0) {
+            clearBit(unfiltered, slot);
+            filteredClients++;
+        }
+    }
+
+    private void unsubscribe(int slot, int symbolId) {
+        if (symbolId >= clientsBySymbol.length || !isSet(clientsBySymbol[symbolId], slot)) {
+            return;
+        }
+        clearBit(clientsBySymbol[symbolId], slot);
+        if (--subscriptionCounts[slot] == 0) {
+            setBit(unfiltered, slot);
+            filteredClients--;
+        }
+    }
+
+    //-- Bitset of the symbol, grown to cover every slot in use
+    private long[] clients(int symbolId) {
+        if (symbolId >= clientsBySymbol.length) {
+            clientsBySymbol = Arrays.copyOf(clientsBySymbol, Math.max(clientsBySymbol.length * 2, symbolId + 1));
+        }
+        long[] clients = clientsBySymbol[symbolId];
+        if (clients == null || clients.length < unfiltered.length) {
+            clients = clients == null ? new long[unfiltered.length] : Arrays.copyOf(clients, unfiltered.length);
+            clientsBySymbol[symbolId] = clients;
+        }
+        return clients;
+    }
+
+    private static boolean isSet(long[] bits, int slot) {
+        return bits != null && (slot >>> 6) < bits.length && (bits[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    private static void setBit(long[] bits, int slot) {
+        bits[slot >>> 6] |= 1L << slot;
+    }
+
+    private static void clearBit(long[] bits, int slot) {
+        bits[slot >>> 6] &= ~(1L << slot);
+    }
+
+    //-- True once any client has narrowed down what it receives
+    public boolean hasFilteredClients() {
+        return filteredClients > 0;
+    }
+
+    public int getWordCount() {
+        return unfiltered.length;
+    }
+
+    //-- Slots of the admitted clients a message on the symbol goes to, 64 at a time
+    public long getInterested(int symbolId, int word) {
+        long interested = unfiltered[word];
+        if (symbolId < clientsBySymbol.length) {
+            long[] clients = clientsBySymbol[symbolId];
+            if (clients != null && word < clients.length) {
+                interested |= clients[word];
+            }
+        }
+        return interested & admitted[word];
+    }
+
+    public ClientSession getSession(int slot) {
+        return sessions[slot];
+    }
+}
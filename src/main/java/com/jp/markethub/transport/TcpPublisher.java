@@ -1,49 +1,315 @@
 package com.jp.markethub.transport;
 
 import com.jp.markethub.MarketHub;
+import com.jp.markethub.common.SymbolTable;
 import com.jp.markethub.consumer.ConsumerManager;
 import com.jp.markethub.log.Logger;
 
-import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.SocketChannel;
 import java.util.Iterator;
 
+/**
+ * Fans every message out to the clients of a port without ever blocking on a socket.
+ * <p>
+ * A client that only partially accepts a write gets the rest queued in its {@link ClientSession} and
+ * is registered for OP_WRITE on a selector private to this publisher. The selector is polled, never
+ * blocked on, from the publishing thread before every fan-out and whenever the feature is idle, so a
+ * single slow client can no longer stall the feature thread or the other clients of the port.
+ * <p>
+ * In {@link PublishMode#COALESCE} mode messages are first packed into one shared buffer, which is
+ * fanned out as a single write per client at the end of a batch once the micro-batch window has
+ * elapsed, or as soon as the buffer fills up. A port whose wait strategy sleeps would not wake up to see
+ * the window elapse, so it flushes at the end of every batch instead.
+ * <p>
+ * A message about a single instrument only goes to the clients the {@link SubscriptionIndex} of the
+ * port routes it to. Such messages are not coalesced while any client filters, as the shared batch
+ * would reach every client.
+ * <p>
+ * With more than one fan-out shard configured for the port, the feature thread no longer writes to any
+ * client. Every message is copied once into a {@link FanOutHandoff} and each {@link FanOutShard} thread
+ * writes it to its own share of the clients, so a port with many clients spreads its fan-out over cores.
+ * <p>
+ * On a {@link SessionMode#THREAD_PER_CLIENT} port every message is instead queued to the {@link SessionWriter}
+ * of each client, whose own thread writes it out, so slow or idle clients cost a queue rather than a share
+ * of the feature thread.
+ */
 public class TcpPublisher implements TransportContract {
 
     private final Logger logger = Logger.getInstance();
     protected final MarketHub hub;
     private final int port;
+    private final int maxMessageLength;
+    private final PublishMode publishMode;
+    private final long coalesceDelayNanos;
+    //-- The feature thread may sleep until the next publish, nothing can be left for a later wake up
+    private final boolean flushEveryBatch;
+
+    //-- Every message is copied once into this buffer and written from it to all clients
+    private final ByteBuffer buffer;
+    private final ByteBuffer batch;
+    private long batchStartNanos;
+
+    private ConsumerManager consumerManager;
+    private final ClientWriter writer = new ClientWriter();
+
+    //-- Only with more than one shard, started along with the first client
+    private final int shardCount;
+    private final boolean threadPerClient;
+    private FanOutHandoff handoff;
+    private FanOutShard[] shards;
+    private boolean unsignalled;
 
 
     public TcpPublisher(MarketHub hub, int port) {
         this.hub = hub;
         this.port = port;
+        this.maxMessageLength = hub.getConfig().getOutboundBufferSize(port);
+        this.publishMode = hub.getConfig().getPublishMode(port);
+        this.coalesceDelayNanos = hub.getConfig().getCoalesceDelayNanos(port);
+        this.flushEveryBatch = !hub.getConfig().getWaitStrategy(port).isSpinning();
+        this.buffer = ByteBuffer.allocateDirect(maxMessageLength);
+        this.batch = ByteBuffer.allocateDirect(publishMode == PublishMode.COALESCE ? hub.getConfig().getCoalesceBufferSize(port) : 0);
+        this.threadPerClient = hub.getConfig().getSessionMode(port) == SessionMode.THREAD_PER_CLIENT;
+        this.shardCount = threadPerClient ? 1 : hub.getConfig().getFanOutShards(port);
     }
 
     @Override
     public void publish(byte[] data, int length) {
+        publishToAll(SymbolTable.NO_SYMBOL, data, length);
+    }
+
+    private void publishToAll(int symbolId, byte[] data, int length) {
         if(logger.isDebugEnabled()) {
-            logger.debug(getClass(), "Received data [ " + new String(data).trim() + " ] to publish");
+            logger.debug(getClass(), "Received data [ " + new String(data, 0, length) + " ] to publish");
+        }
+        if (length > maxMessageLength) {
+            logger.error(getClass(), "Dropping message of {} bytes, larger than {}", length, maxMessageLength);
+            return;
+        }
+
+        if (publishMode == PublishMode.COALESCE && length <= batch.capacity()) {
+            //-- Flush when the buffer fills up, the new message starts the next batch
+            if (length > batch.remaining()) {
+                flushBatch();
+            }
+            if (batch.position() == 0) {
+                batchStartNanos = System.nanoTime();
+            }
+            batch.put(data, 0, length);
+            return;
+        }
+
+        //-- Keep the ordering when a message too large to coalesce shows up
+        if (publishMode == PublishMode.COALESCE) {
+            flushBatch();
+        }
+        buffer.clear();
+        buffer.put(data, 0, length);
+        buffer.flip();
+        fanOut(buffer, symbolId);
+    }
+
+    @Override
+    public void publish(int symbolId, byte[] data, int length) {
+        ConsumerManager consumerManager = getConsumerManager();
+        if (consumerManager == null) return;
+        SubscriptionIndex subscriptions = consumerManager.getSubscriptions();
+        subscriptions.apply();
+
+        //-- Nobody filters, every client gets it anyway
+        if (!subscriptions.hasFilteredClients()) {
+            publishToAll(symbolId, data, length);
+            return;
+        }
+        if (length > maxMessageLength) {
+            logger.error(getClass(), "Dropping message of {} bytes, larger than {}", length, maxMessageLength);
+            return;
+        }
+        if (publishMode == PublishMode.COALESCE) {
+            flushBatch();
+        }
+        buffer.clear();
+        buffer.put(data, 0, length);
+        buffer.flip();
+
+        if (shardCount > 1) {
+            handoff(consumerManager).route(buffer, subscriptions, symbolId);
+            unsignalled = true;
+            return;
+        }
+        if (writer.hasBacklog()) {
+            writer.flushWritableClients(consumerManager);
+        }
+        //-- Only walk the clients whose bit is set
+        for (int word = 0; word < subscriptions.getWordCount(); word++) {
+            long interested = subscriptions.getInterested(symbolId, word);
+            while (interested != 0) {
+                int slot = (word << 6) + Long.numberOfTrailingZeros(interested);
+                interested &= interested - 1;
+                offer(consumerManager, subscriptions.getSession(slot), buffer, symbolId);
+            }
+        }
+    }
+
+    @Override
+    public boolean send(ClientSession client, int symbolId, byte[] data, int length) {
+        ConsumerManager consumerManager = getConsumerManager();
+        if (length > maxMessageLength) {
+            logger.error(getClass(), "Dropping message of {} bytes, larger than {}", length, maxMessageLength);
+            return true;
+        }
+        buffer.clear();
+        buffer.put(data, 0, length);
+        buffer.flip();
+        if (shardCount > 1) {
+            handoff(consumerManager).direct(client, buffer, symbolId);
+            unsignalled = true;
+            return client.getChannel().isOpen();
+        }
+        offer(consumerManager, client, buffer, symbolId);
+        return client.getChannel().isOpen();
+    }
+
+    //-- Older coalesced messages must not reach a joining client after its snapshot
+    @Override
+    public void onBeforeAdmit() {
+        if (publishMode == PublishMode.COALESCE) {
+            flushBatch();
+        }
+    }
+
+    //-- The shard a client belongs to starts writing to it only once it is done with the snapshot
+    @Override
+    public void onClientAdmitted(ClientSession client) {
+        if (shardCount > 1) {
+            handoff(getConsumerManager()).admit(client);
+            unsignalled = true;
+        }
+    }
+
+    @Override
+    public void onEndOfBatch() {
+        applySubscriptions();
+        if (flushEveryBatch) {
+            flushBatch();
+        } else {
+            flushBatchIfDue();
+        }
+        signalShards();
+    }
+
+    private void applySubscriptions() {
+        ConsumerManager consumerManager = getConsumerManager();
+        if (consumerManager != null) {
+            consumerManager.getSubscriptions().apply();
         }
-        ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
-        ConsumerManager consumerManager = hub.getConsumerManagerForPort(port);
+    }
+
+    private void flushBatchIfDue() {
+        if (batch.position() > 0 && System.nanoTime() - batchStartNanos >= coalesceDelayNanos) {
+            flushBatch();
+        }
+    }
+
+    private void flushBatch() {
+        if (batch.position() == 0) {
+            return;
+        }
+        batch.flip();
+        fanOut(batch, SymbolTable.NO_SYMBOL);
+        batch.clear();
+    }
+
+    private ConsumerManager getConsumerManager() {
+        if (consumerManager == null) {
+            consumerManager = hub.getConsumerManagerForPort(port);
+        }
+        return consumerManager;
+    }
+
+    private void fanOut(ByteBuffer message, int symbolId) {
+        ConsumerManager consumerManager = getConsumerManager();
         if(consumerManager == null)return;
-        Iterator<SocketChannel> iterator = consumerManager.getClients();
+
+        if (shardCount > 1) {
+            handoff(consumerManager).broadcast(message, symbolId);
+            unsignalled = true;
+            return;
+        }
+
+        //-- Give clients that drained since the last publish a chance to catch up first
+        if (writer.hasBacklog()) {
+            writer.flushWritableClients(consumerManager);
+        }
+
+        Iterator<ClientSession> iterator = consumerManager.getClients();
         while (iterator.hasNext()) {
-            SocketChannel client = iterator.next();
-            try {
-                buffer.rewind();
-                while (buffer.hasRemaining()) {
-                    client.write(buffer);
-                    if(logger.isDebugEnabled()) {
-                        logger.debug(getClass(), "Published data [ " + new String(data).trim() + "] to [ " + client.getRemoteAddress().toString().trim() + " ]");
-                    }
+            offer(consumerManager, iterator.next(), message, symbolId);
+        }
+    }
+
+    private void offer(ConsumerManager consumerManager, ClientSession client, ByteBuffer message, int symbolId) {
+        if (threadPerClient) {
+            message.position(0);
+            sessionWriter(consumerManager, client).offer(message);
+        } else {
+            writer.offer(consumerManager, client, message, 0, symbolId);
+        }
+    }
+
+    //-- Publishing thread, a client gets its writer the first time anything is sent to it, its snapshot included
+    private SessionWriter sessionWriter(ConsumerManager consumerManager, ClientSession client) {
+        SessionWriter sessionWriter = client.getSessionWriter();
+        if (sessionWriter == null) {
+            sessionWriter = new SessionWriter(client, consumerManager, hub.getConfig().getOverflowPolicy(port), hub.getConfig().getSessionQueueSize(port));
+            client.setSessionWriter(sessionWriter);
+            sessionWriter.start(hub.getThreads(), "session-" + port + "-" + client.getSlot());
+        }
+        return sessionWriter;
+    }
+
+    @Override
+    public void onClientRemoved(ClientSession client) {
+        SessionWriter sessionWriter = client.getSessionWriter();
+        if (sessionWriter != null) {
+            sessionWriter.close();
+        }
+    }
+
+    //-- Publishing thread only, the shards are started the first time anything is handed off
+    private FanOutHandoff handoff(ConsumerManager consumerManager) {
+        if (handoff == null) {
+            handoff = new FanOutHandoff(hub.getConfig().getFanOutHandoffSize(), hub.getConfig().getFanOutHandoffCapacity(), shardCount);
+            shards = new FanOutShard[shardCount];
+            for (int i = 0; i < shardCount; i++) {
+                shards[i] = new FanOutShard(i, shardCount, handoff, consumerManager, hub.getConfig().getWaitStrategy(port).create());
+                shards[i].start(hub.getThreads(), "fanout-" + port + "-" + i);
+            }
+        }
+        return handoff;
+    }
+
+    //-- Blocking shards are woken up once per batch rather than once per message
+    private void signalShards() {
+        if (unsignalled) {
+            unsignalled = false;
+            for (FanOutShard shard : shards) {
+                if (shard.isBlocking()) {
+                    shard.signal();
                 }
-            } catch (IOException e) {
-                logger.error(getClass(), "Failed to write to client: " + e.getMessage());
-                iterator.remove();
-                closeClient(client);
+            }
+        }
+    }
+
+    @Override
+    public void onIdle() {
+        applySubscriptions();
+        flushBatchIfDue();
+        signalShards();
+        if (writer.hasBacklog()) {
+            ConsumerManager consumerManager = getConsumerManager();
+            if (consumerManager != null) {
+                writer.flushWritableClients(consumerManager);
             }
         }
     }
@@ -53,13 +319,21 @@ public class TcpPublisher implements TransportContract {
         return port;
     }
 
-    private void closeClient(SocketChannel client) {
-        try {
-            client.close();
-        } catch (IOException ex) {
-            logger.error(getClass(), "Error closing client: " + ex.getMessage());
+    @Override
+    public void close() {
+        ConsumerManager consumerManager = getConsumerManager();
+        if (threadPerClient && consumerManager != null) {
+            Iterator<ClientSession> iterator = consumerManager.getClients();
+            while (iterator.hasNext()) {
+                onClientRemoved(iterator.next());
+            }
+        }
+        if (handoff != null) {
+            handoff.close();
+            for (FanOutShard shard : shards) {
+                shard.close();
+            }
         }
+        writer.close();
     }
-
-
 }
@@ -1,7 +1,51 @@
 package com.jp.markethub.transport;
 
+import java.io.IOException;
+
 public interface TransportContract {
     void publish(byte[] data, int length);
 
+    //-- A message about a single instrument, transports that route by subscription only send it to interested clients
+    default void publish(int symbolId, byte[] data, int length) {
+        publish(data, length);
+    }
+
+    /**
+     * Sends a message about the instrument of symbolId to a single client of a connection oriented transport,
+     * outside of the fan-out. Returns false when the client could not take it and has been disconnected.
+     */
+    boolean send(ClientSession client, int symbolId, byte[] data, int length);
+
+    //-- Invoked from the publishing thread before joining clients get their snapshot, anything held back must go out now
+    default void onBeforeAdmit() {
+    }
+
+    //-- Invoked from the publishing thread once a client has had its snapshot and joins the live fan-out
+    default void onClientAdmitted(ClientSession client) {
+    }
+
+    //-- Invoked from any thread once a client has left the port
+    default void onClientRemoved(ClientSession client) {
+    }
+
     Integer getPort();
+
+    //-- Connection oriented transports get a server socket on their port, the others are started by the hub
+    default boolean acceptsConnections() {
+        return true;
+    }
+
+    default void start() throws IOException {
+    }
+
+    //-- Invoked from the publishing thread once the feature has handled a whole batch of updates
+    default void onEndOfBatch() {
+    }
+
+    //-- Invoked from the publishing thread whenever the feature has nothing to publish
+    default void onIdle() {
+    }
+
+    default void close() {
+    }
 }
@@ -0,0 +1,35 @@
+package com.jp.markethub.transport.ipc;
+
+/**
+ * Layout of the memory-mapped file shared between the hub and co-located consumers.
+ * <pre>
+ * 0    magic (int) | version (int) | capacity of the record area (long)
+ * 64   write position (long), everything before it is complete and readable
+ * 128  claimed position (long), the writer may be overwriting anything before it minus capacity
+ * 192  record area, records are [length (int)][payload] padded to 8 bytes
+ * </pre>
+ * Positions are absolute byte counts that only ever grow, a record never straddles the end of the
+ * record area, a length of {@link #PADDING} tells the reader to continue from the start instead.
+ */
+public final class SharedMemoryLayout {
+    public static final int MAGIC = 0x4A504D48;
+    public static final int VERSION = 1;
+
+    public static final int MAGIC_OFFSET = 0;
+    public static final int VERSION_OFFSET = 4;
+    public static final int CAPACITY_OFFSET = 8;
+    public static final int WRITE_POSITION_OFFSET = 64;
+    public static final int CLAIMED_POSITION_OFFSET = 128;
+    public static final int HEADER_LENGTH = 192;
+
+    public static final int RECORD_HEADER_LENGTH = 4;
+    public static final int RECORD_ALIGNMENT = 8;
+    public static final int PADDING = -1;
+
+    private SharedMemoryLayout() {
+    }
+
+    public static int recordLength(int payloadLength) {
+        return (RECORD_HEADER_LENGTH + payloadLength + RECORD_ALIGNMENT - 1) & -RECORD_ALIGNMENT;
+    }
+}
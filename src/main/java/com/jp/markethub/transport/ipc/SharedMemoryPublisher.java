@@ -0,0 +1,108 @@
+package com.jp.markethub.transport.ipc;
+
+import com.jp.markethub.common.MemoryFences;
+import com.jp.markethub.config.MarketHubConfig;
+import com.jp.markethub.log.Logger;
+import com.jp.markethub.transport.ClientSession;
+import com.jp.markethub.transport.TransportContract;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static com.jp.markethub.transport.ipc.SharedMemoryLayout.*;
+
+/**
+ * Appends every feature message to a memory-mapped ring file that consumers on the same box read
+ * with their own {@link SharedMemoryReader}. Nothing goes through the kernel socket stack and the
+ * message is written exactly once, however many local consumers there are.
+ */
+public class SharedMemoryPublisher implements TransportContract {
+    private final Logger logger = Logger.getInstance();
+    private final String file;
+    private final int port;
+    private final int capacity;
+
+    private MappedByteBuffer buffer;
+    private long writePosition;
+
+    public SharedMemoryPublisher(MarketHubConfig config) {
+        this.file = config.getSharedMemoryFile();
+        this.port = config.getSharedMemoryPort();
+        this.capacity = config.getSharedMemoryCapacity();
+        if ((capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("Shared memory capacity must be power-of-two");
+        }
+    }
+
+    @Override
+    public void start() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(HEADER_LENGTH + capacity);
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_LENGTH + capacity);
+        }
+        //-- A restarted hub starts over, readers notice the write position going backwards
+        buffer.putLong(CLAIMED_POSITION_OFFSET, 0);
+        buffer.putLong(WRITE_POSITION_OFFSET, 0);
+        buffer.putLong(CAPACITY_OFFSET, capacity);
+        buffer.putInt(VERSION_OFFSET, VERSION);
+        MemoryFences.storeFence();
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        if (logger.isDebugEnabled()) {
+            logger.debug(getClass(), "Publishing to shared memory file " + file);
+        }
+    }
+
+    @Override
+    public void publish(byte[] data, int length) {
+        int recordLength = recordLength(length);
+        if (recordLength > capacity / 2) {
+            logger.error(getClass(), "Dropping message of {} bytes, larger than the shared memory ring allows", length);
+            return;
+        }
+        int offset = (int) (writePosition & (capacity - 1));
+        if (offset + recordLength > capacity) {
+            //-- Tell readers to carry on from the start, the padding only needs its length word
+            claim(writePosition + capacity - offset + recordLength);
+            buffer.putInt(HEADER_LENGTH + offset, PADDING);
+            writePosition += capacity - offset;
+            offset = 0;
+        } else {
+            claim(writePosition + recordLength);
+        }
+
+        int index = HEADER_LENGTH + offset;
+        buffer.putInt(index, length);
+        for (int i = 0; i < length; i++) {
+            buffer.put(index + RECORD_HEADER_LENGTH + i, data[i]);
+        }
+        writePosition += recordLength;
+
+        //-- The record is complete before readers can see the new write position
+        MemoryFences.storeFence();
+        buffer.putLong(WRITE_POSITION_OFFSET, writePosition);
+    }
+
+    //-- Announce the bytes about to be overwritten before touching them
+    private void claim(long position) {
+        buffer.putLong(CLAIMED_POSITION_OFFSET, position);
+        MemoryFences.storeFence();
+    }
+
+    @Override
+    public Integer getPort() {
+        return port;
+    }
+
+    //-- Connectionless, the hub never hands it a client, one that shows up anyway is turned away
+    @Override
+    public boolean send(ClientSession client, int symbolId, byte[] data, int length) {
+        return false;
+    }
+
+    @Override
+    public boolean acceptsConnections() {
+        return false;
+    }
+}
@@ -0,0 +1,104 @@
+package com.jp.markethub.transport.ipc;
+
+import com.jp.markethub.common.MemoryFences;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static com.jp.markethub.transport.ipc.SharedMemoryLayout.*;
+
+/**
+ * Reads the messages a {@link SharedMemoryPublisher} appends to its ring file. Every reader has its
+ * own cursor, starts at the live end of the ring and never writes to the file. Polling does not
+ * allocate, a reader that falls more than a ring behind skips ahead and counts the lost messages
+ * as a single gap.
+ */
+public class SharedMemoryReader implements AutoCloseable {
+    private final MappedByteBuffer buffer;
+    private final RandomAccessFile raf;
+    private final int capacity;
+
+    private long position;
+    private long gaps;
+
+    public SharedMemoryReader(String file) throws IOException {
+        raf = new RandomAccessFile(file, "r");
+        buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        if (buffer.getInt(MAGIC_OFFSET) != MAGIC || buffer.getInt(VERSION_OFFSET) != VERSION) {
+            raf.close();
+            throw new IOException("Not a MarketHub shared memory file: " + file);
+        }
+        capacity = (int) buffer.getLong(CAPACITY_OFFSET);
+        position = writePosition();
+    }
+
+    private long writePosition() {
+        long writePosition = buffer.getLong(WRITE_POSITION_OFFSET);
+        MemoryFences.loadFence();
+        return writePosition;
+    }
+
+    /**
+     * Copies the next message into dst, which must be large enough for any message.
+     * Returns its length, or 0 when there is nothing new to read.
+     */
+    public int poll(byte[] dst) {
+        while (true) {
+            long writePosition = writePosition();
+            if (writePosition < position) {
+                //-- The hub restarted and begun a new ring
+                position = 0;
+                gaps++;
+                continue;
+            }
+            if (writePosition == position) {
+                return 0;
+            }
+            if (writePosition - position > capacity) {
+                skipToLatest(writePosition);
+                continue;
+            }
+
+            int offset = (int) (position & (capacity - 1));
+            int length = buffer.getInt(HEADER_LENGTH + offset);
+            if (length == PADDING) {
+                position += capacity - offset;
+                continue;
+            }
+            if (length < 0 || length > dst.length) {
+                skipToLatest(writePosition);
+                continue;
+            }
+            int index = HEADER_LENGTH + offset + RECORD_HEADER_LENGTH;
+            for (int i = 0; i < length; i++) {
+                dst[i] = buffer.get(index + i);
+            }
+
+            //-- The writer may have lapped us while we were copying
+            MemoryFences.loadFence();
+            if (buffer.getLong(CLAIMED_POSITION_OFFSET) - position > capacity) {
+                skipToLatest(writePosition());
+                continue;
+            }
+            position += recordLength(length);
+            return length;
+        }
+    }
+
+    private void skipToLatest(long writePosition) {
+        position = writePosition;
+        gaps++;
+    }
+
+    //-- Number of times the reader was lapped and had to skip messages
+    public long getGaps() {
+        return gaps;
+    }
+
+    @Override
+    public void close() throws IOException {
+        raf.close();
+    }
+}
@@ -0,0 +1,19 @@
+package com.jp.markethub.common.thread;
+
+/**
+ * Creates the threads of client sessions. This is the Java 21 version of the multi-release jar, every
+ * session gets a virtual thread, which only holds on to a carrier thread while it copies bytes.
+ */
+final class SessionThreads {
+
+    private SessionThreads() {
+    }
+
+    static Thread newThread(String name, Runnable task) {
+        return Thread.ofVirtual().name(name).unstarted(task);
+    }
+
+    static boolean isVirtual() {
+        return true;
+    }
+}
@@ -0,0 +1,23 @@
+package com.jp.markethub.common;
+
+import java.lang.invoke.VarHandle;
+
+/**
+ * Load and store fences for the seqlock style reads of the ring. This is the Java 9 version of the
+ * multi-release jar, used on every runtime from Java 9 on, backed by the {@link VarHandle} fences.
+ */
+public final class MemoryFences {
+
+    private MemoryFences() {
+    }
+
+    //-- Loads before the fence are not reordered with loads and stores after it
+    public static void loadFence() {
+        VarHandle.acquireFence();
+    }
+
+    //-- Loads and stores before the fence are not reordered with stores after it
+    public static void storeFence() {
+        VarHandle.releaseFence();
+    }
+}
@@ -32,7 +32,7 @@ public class MarketHubTestBase {
 
     protected void startMarketHub() {
         //-- Initialize MarketHub
-        hub = new MarketHub(new MarketHubConfig());
+        hub = new MarketHub(createConfig());
         try {
             hub.startConsumer();
 
@@ -50,6 +50,10 @@ public class MarketHubTestBase {
         }
     }
 
+    protected MarketHubConfig createConfig() {
+        return new MarketHubConfig();
+    }
+
     @After
     public void tearDown() throws Exception {
         consumers.forEach(JpInternalConsumer::close);
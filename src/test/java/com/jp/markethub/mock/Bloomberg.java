@@ -12,7 +12,7 @@ public class Bloomberg {
     private final Logger logger = Logger.getInstance();
     private final int port;
     private ServerSocket serverSocket;
-    private Socket clientSocket;
+    private volatile Socket clientSocket;
     private ExecutorService executor = Executors.newSingleThreadExecutor();
     private volatile boolean running = true;
 
@@ -37,6 +37,10 @@ public class Bloomberg {
         });
     }
 
+    public boolean isConnected() {
+        return clientSocket != null;
+    }
+
     public void publish(String data) {
         if (clientSocket != null && clientSocket.isConnected()) {
             try {
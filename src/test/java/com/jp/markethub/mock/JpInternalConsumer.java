@@ -57,6 +57,11 @@ public class JpInternalConsumer implements AutoCloseable {
         });
     }
 
+    public void send(String command) throws IOException {
+        socket.getOutputStream().write(command.getBytes());
+        socket.getOutputStream().flush();
+    }
+
     public void awaitFirstMessage(long timeout, TimeUnit unit)
             throws InterruptedException {
         messageReceivedLatch.await(timeout, unit);
@@ -0,0 +1,48 @@
+package com.jp.markethub.sanity;
+
+import com.jp.markethub.MarketHubTestBase;
+import com.jp.markethub.config.MarketHubConfig;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static com.jp.markethub.util.TestUtils.waitTillTrue;
+
+public class AsyncLoggingSpecificationTest extends MarketHubTestBase {
+    private Path logFile;
+
+    @Override
+    protected MarketHubConfig createConfig() {
+        MarketHubConfig config = new MarketHubConfig();
+        try {
+            logFile = Files.createTempFile("markethub", ".log");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        config.setLogFile(logFile.toString());
+        return config;
+    }
+
+    @Test
+    public void errorsOfHotThreadsMustBeWrittenToTheLogFile() throws Exception {
+        waitTillTrue(bidOfferFeed::isConnected, 1, TimeUnit.SECONDS);
+        bidOfferFeed.publish("1,103.0,104.0;");
+        bidOfferFeed.publish("3,104.0,105.0;");
+
+        //-- The ingest thread only queued the error, the log writer formats it in the background
+        waitTillTrue(() -> read().contains("[Producer] [ERROR] - BIDOFFER feed skipped from SequenceNo 1 to 3"), 2, TimeUnit.SECONDS);
+    }
+
+    private String read() {
+        try {
+            return new String(Files.readAllBytes(logFile), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.jp.markethub.sanity;
+
+import com.jp.markethub.MarketHubTestBase;
+import com.jp.markethub.config.MarketHubConfig;
+import com.jp.markethub.mock.JpInternalConsumer;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.jp.markethub.sanity.MarketHubSpecificationTest.JP_STRIDE;
+import static org.junit.Assert.assertEquals;
+
+public class BatchConflationSpecificationTest extends MarketHubTestBase {
+
+    @Override
+    protected MarketHubConfig createConfig() {
+        MarketHubConfig config = new MarketHubConfig();
+        config.setConflateBatches(BID_OFFER_LAST_PRICE_INTERNAL_PORT, true);
+        return config;
+    }
+
+    @Test
+    public void burstPublishedBeforeConsumerJoinsMustBeFoldedIntoLatestState() throws Exception {
+        bidOfferFeed.publish("1,103.0,104.0;");
+        bidOfferFeed.publish("2,104.0,105.0;");
+        bidOfferFeed.publish("3,105.0,106.0;");
+        lastPriceFeed.publish("1,105.5;");
+
+        //-- Make sure the whole burst is sitting in the rings before the feature starts draining
+        Thread.sleep(200);
+
+        try (JpInternalConsumer jpStride = new JpInternalConsumer(BID_OFFER_LAST_PRICE_INTERNAL_PORT, JP_STRIDE)) {
+            jpStride.connectToMarketHubAndListen();
+            jpStride.awaitConnectionToMarketHub(1, TimeUnit.SECONDS);
+
+            jpStride.awaitFirstMessage(2, TimeUnit.SECONDS);
+            assertEquals("0,105.0,106.0,105.5", jpStride.getNextMessage(1, TimeUnit.SECONDS));
+
+            //-- Nothing else was published for the burst
+            Thread.sleep(200);
+            assertEquals(0, jpStride.allMessageCount());
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.jp.markethub.sanity;
+
+import com.jp.markethub.MarketHubTestBase;
+import com.jp.markethub.common.BinaryCodec;
+import com.jp.markethub.common.FixedPoint;
+import com.jp.markethub.consumer.ConsumerManager;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+import static com.jp.markethub.util.TestUtils.waitTillTrue;
+import static org.junit.Assert.assertEquals;
+
+public class BinaryEncodingSpecificationTest extends MarketHubTestBase {
+    private static final int BINARY_PORT = 10001;
+
+    @Test
+    public void binaryPortMustPublishFixedWidthMessages() throws Exception {
+        try (SocketChannel client = SocketChannel.open(new InetSocketAddress("localhost", BINARY_PORT))) {
+            waitTillTrue(() -> {
+                ConsumerManager manager = hub.getConsumerManagerForPort(BINARY_PORT);
+                return manager != null && manager.getTotalClients() == 1;
+            }, 1, TimeUnit.SECONDS);
+            waitTillTrue(bidOfferFeed::isConnected, 1, TimeUnit.SECONDS);
+
+            bidOfferFeed.publish("1,103.25,104.5;");
+            ByteBuffer message = ByteBuffer.allocate(BinaryCodec.MESSAGE_LENGTH);
+            while (message.hasRemaining()) {
+                client.read(message);
+            }
+
+            assertEquals(BinaryCodec.BID_OFFER_LAST_PRICE, BinaryCodec.getType(message, 0));
+            assertEquals(0, BinaryCodec.getSequence(message, 0));
+            assertEquals(103_250_000L, BinaryCodec.getBid(message, 0));
+            assertEquals(104_500_000L, BinaryCodec.getOffer(message, 0));
+            assertEquals(FixedPoint.NULL, BinaryCodec.getLast(message, 0));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.jp.markethub.sanity;
+
+import com.jp.markethub.MarketHubTestBase;
+import com.jp.markethub.common.wait.WaitStrategyType;
+import com.jp.markethub.config.MarketHubConfig;
+import com.jp.markethub.mock.JpInternalConsumer;
+import com.jp.markethub.transport.PublishMode;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.jp.markethub.sanity.MarketHubSpecificationTest.JP_STRIDE;
+import static org.junit.Assert.assertEquals;
+
+public class BlockingCoalescedPublishSpecificationTest extends MarketHubTestBase {
+
+    @Override
+    protected MarketHubConfig createConfig() {
+        MarketHubConfig config = new MarketHubConfig();
+        config.setPublishMode(BID_OFFER_LAST_PRICE_INTERNAL_PORT, PublishMode.COALESCE);
+        //-- Far longer than the test waits, only the end of the batch can flush it
+        config.setCoalesceDelay(BID_OFFER_LAST_PRICE_INTERNAL_PORT, 1, TimeUnit.MINUTES);
+        config.setWaitStrategy(BID_OFFER_LAST_PRICE_INTERNAL_PORT, WaitStrategyType.BLOCKING);
+        return config;
+    }
+
+    @Test
+    public void blockingPortMustFlushAtTheEndOfEveryBatch() throws Exception {
+        try (JpInternalConsumer jpStride = new JpInternalConsumer(BID_OFFER_LAST_PRICE_INTERNAL_PORT, JP_STRIDE)) {
+            jpStride.connectToMarketHubAndListen();
+            jpStride.awaitConnectionToMarketHub(1, TimeUnit.SECONDS);
+
+            //-- The feature thread goes back to sleep right after this batch
+            bidOfferFeed.publish("1,103.0,104.0;");
+            assertEquals("0,103.0,104.0,", jpStride.getNextMessage(2, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.jp.markethub.sanity;
+
+import com.jp.markethub.MarketHubTestBase;
+import com.jp.markethub.config.MarketHubConfig;
+import com.jp.markethub.mock.JpInternalConsumer;
+import com.jp.markethub.transport.PublishMode;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.jp.markethub.sanity.MarketHubSpecificationTest.JP_STRIDE;
+import static com.jp.markethub.util.TestUtils.waitTillTrue;
+import static org.junit.Assert.assertEquals;
+
+public class CoalescedPublishSpecificationTest extends MarketHubTestBase {
+
+    @Override
+    protected MarketHubConfig createConfig() {
+        MarketHubConfig config = new MarketHubConfig();
+        config.setPublishMode(BID_OFFER_LAST_PRICE_INTERNAL_PORT, PublishMode.COALESCE);
+        config.setCoalesceDelay(BID_OFFER_LAST_PRICE_INTERNAL_PORT, 1, TimeUnit.MILLISECONDS);
+        return config;
+    }
+
+    @Test
+    public void coalescedMessagesMustAllArriveInOrder() throws Exception {
+        try (JpInternalConsumer jpStride = new JpInternalConsumer(BID_OFFER_LAST_PRICE_INTERNAL_PORT, JP_STRIDE)) {
+            jpStride.connectToMarketHubAndListen();
+            jpStride.awaitConnectionToMarketHub(1, TimeUnit.SECONDS);
+
+            bidOfferFeed.publish("1,103.0,104.0;");
+            bidOfferFeed.publish("2,104.0,105.0;");
+            bidOfferFeed.publish("3,105.0,106.0;");
+
+            //-- Nothing is held back once the micro-batch window has elapsed
+            waitTillTrue(() -> jpStride.allMessageCount() == 3, 2, TimeUnit.SECONDS);
+            assertEquals("0,103.0,104.0,", jpStride.getNextMessage(1, TimeUnit.SECONDS));
+            assertEquals("1,104.0,105.0,", jpStride.getNextMessage(1, TimeUnit.SECONDS));
+            assertEquals("2,105.0,106.0,", jpStride.getNextMessage(1, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.jp.markethub.sanity;
+
+import com.jp.markethub.common.FixedPoint;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class FixedPointSpecificationTest {
+
+    @Test
+    public void pricesMustBeScaledToSixDecimals() {
+        assertParsed(103_250_000L, "103.25");
+        assertParsed(-1_500_000L, "-1.5");
+        assertParsed(7_000_000L, "7");
+        assertParsed(1_234_567L, "1.23456789");
+        assertParsed(0L, "0.000");
+    }
+
+    @Test
+    public void fieldsWithoutDigitsMustBeNull() {
+        assertParsed(FixedPoint.NULL, "");
+        assertParsed(FixedPoint.NULL, "-");
+        assertParsed(FixedPoint.NULL, ".");
+        assertParsed(FixedPoint.NULL, "-.");
+        assertParsed(FixedPoint.NULL, "1.2.3");
+        assertParsed(FixedPoint.NULL, "12a");
+    }
+
+    @Test
+    public void pricesThatMightNotFitMustBeNull() {
+        //-- 12 integer digits and 6 decimals is as large as it gets
+        assertParsed(999_999_999_999_999_999L, "999999999999.999999");
+        assertParsed(FixedPoint.NULL, "9999999999999");
+        assertParsed(FixedPoint.NULL, "1234567890123456789012");
+        //-- Leading zeros and truncated decimals do not count
+        assertParsed(1_000_000L, "0000000000000000000001");
+        assertParsed(1_000_000L, "1.0000000000000000000001");
+    }
+
+    private static void assertParsed(long expected, String field) {
+        byte[] bytes = ("," + field + ",").getBytes(StandardCharsets.US_ASCII);
+        int end = bytes.length - 1;
+        assertEquals(field, expected, FixedPoint.parse(bytes, 1, end));
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        assertEquals(field, expected, FixedPoint.parse(direct, 1, end));
+    }
+}
@@ -0,0 +1,97 @@
+package com.jp.markethub.sanity;
+
+import com.jp.markethub.MarketHubTestBase;
+import com.jp.markethub.config.MarketHubConfig;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.jp.markethub.util.TestUtils.waitTillTrue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JournalSpecificationTest extends MarketHubTestBase {
+    private static final int REPLAY_PORT = 10300;
+
+    @Override
+    protected MarketHubConfig createConfig() {
+        MarketHubConfig config = new MarketHubConfig();
+        try {
+            config.setJournalDirectory(Files.createTempDirectory("journal").toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        config.setReplayPort(REPLAY_PORT);
+        return config;
+    }
+
+    @Test
+    public void journaledMessagesMustBeReplayedFromAnySequence() throws Exception {
+        waitTillTrue(bidOfferFeed::isConnected, 1, TimeUnit.SECONDS);
+        bidOfferFeed.publish("1,103.0,104.0;");
+        bidOfferFeed.publish("2,104.0,105.0;");
+        bidOfferFeed.publish("3,105.0,106.0;");
+
+        //-- The journal catches up in the background
+        List<String> replayed = new ArrayList<>();
+        waitTillTrue(() -> {
+            replayed.clear();
+            replayed.addAll(replay("REPLAY,BIDOFFER,1\n"));
+            return replayed.size() == 2;
+        }, 2, TimeUnit.SECONDS);
+
+        assertEquals("1:2,104.0,105.0", replayed.get(0));
+        assertEquals("2:3,105.0,106.0", replayed.get(1));
+    }
+
+    @Test
+    public void stalledReplayClientMustNotHoldUpOtherReplays() throws Exception {
+        waitTillTrue(bidOfferFeed::isConnected, 1, TimeUnit.SECONDS);
+        bidOfferFeed.publish("1,103.0,104.0;");
+
+        //-- Connects and never sends its request
+        try (Socket stalled = new Socket("localhost", REPLAY_PORT)) {
+            List<String> replayed = new ArrayList<>();
+            waitTillTrue(() -> {
+                replayed.clear();
+                replayed.addAll(replay("REPLAY,BIDOFFER,0\n"));
+                return replayed.size() == 1;
+            }, 2, TimeUnit.SECONDS);
+            assertEquals("0:1,103.0,104.0", replayed.get(0));
+            assertTrue(stalled.isConnected());
+        }
+    }
+
+    private List<String> replay(String request) {
+        List<String> records = new ArrayList<>();
+        try (Socket socket = new Socket("localhost", REPLAY_PORT)) {
+            socket.setSoTimeout(1000);
+            socket.getOutputStream().write(request.getBytes(StandardCharsets.US_ASCII));
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return records;
+                }
+                long sequence = in.readLong();
+                in.readLong();
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                records.add(sequence + ":" + new String(payload, StandardCharsets.US_ASCII));
+            }
+        } catch (IOException e) {
+            return records;
+        }
+    }
+}
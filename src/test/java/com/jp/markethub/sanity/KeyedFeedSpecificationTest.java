@@ -0,0 +1,40 @@
+package com.jp.markethub.sanity;
+
+import com.jp.markethub.MarketHubTestBase;
+import com.jp.markethub.config.MarketHubConfig;
+import com.jp.markethub.mock.JpInternalConsumer;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.jp.markethub.sanity.MarketHubSpecificationTest.JP_STRIDE;
+import static com.jp.markethub.util.TestUtils.waitTillTrue;
+import static org.junit.Assert.assertEquals;
+
+public class KeyedFeedSpecificationTest extends MarketHubTestBase {
+
+    @Override
+    protected MarketHubConfig createConfig() {
+        MarketHubConfig config = new MarketHubConfig();
+        config.setKeyedFeeds(true);
+        return config;
+    }
+
+    @Test
+    public void everyInstrumentMustKeepItsOwnLastValues() throws Exception {
+        try (JpInternalConsumer jpStride = new JpInternalConsumer(BID_OFFER_LAST_PRICE_INTERNAL_PORT, JP_STRIDE)) {
+            jpStride.connectToMarketHubAndListen();
+            jpStride.awaitConnectionToMarketHub(1, TimeUnit.SECONDS);
+
+            bidOfferFeed.publish("IBM,103.0,104.0;");
+            bidOfferFeed.publish("MSFT,50.0,51.0;");
+            waitTillTrue(() -> jpStride.allMessageCount() == 2, 2, TimeUnit.SECONDS);
+            lastPriceFeed.publish("IBM,103.5;");
+            waitTillTrue(() -> jpStride.allMessageCount() == 3, 2, TimeUnit.SECONDS);
+
+            assertEquals("0,IBM,103.0,104.0,", jpStride.getNextMessage(1, TimeUnit.SECONDS));
+            assertEquals("1,MSFT,50.0,51.0,", jpStride.getNextMessage(1, TimeUnit.SECONDS));
+            assertEquals("2,IBM,103.0,104.0,103.5", jpStride.getNextMessage(1, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.jp.markethub.sanity;
+
+import com.jp.markethub.MarketHubTestBase;
+import com.jp.markethub.consumer.LagMonitor;
+import com.jp.markethub.mock.JpInternalConsumer;
+import com.jp.markethub.producer.ProducerType;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.jp.markethub.sanity.MarketHubSpecificationTest.JP_STRIDE;
+import static com.jp.markethub.util.TestUtils.waitTillTrue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LagMonitoringSpecificationTest extends MarketHubTestBase {
+
+    @Test
+    public void feedGapsMustBeToldApartFromHubOverruns() throws Exception {
+        try (JpInternalConsumer jpStride = new JpInternalConsumer(BID_OFFER_LAST_PRICE_INTERNAL_PORT, JP_STRIDE)) {
+            jpStride.connectToMarketHubAndListen();
+            waitTillTrue(() -> hub.getConsumerManagerForPort(BID_OFFER_LAST_PRICE_INTERNAL_PORT) != null
+                    && hub.getConsumerManagerForPort(BID_OFFER_LAST_PRICE_INTERNAL_PORT).getTotalClients() == 1, 1, TimeUnit.SECONDS);
+
+            //-- SequenceNo 2 and 3 never made it out of the feed
+            bidOfferFeed.publish("1,103.0,104.0;");
+            bidOfferFeed.publish("4,104.0,105.0;");
+            waitTillTrue(() -> jpStride.allMessageCount() == 2, 2, TimeUnit.SECONDS);
+
+            assertEquals(1, hub.getProducer(ProducerType.BIDOFFER).getFeedGaps());
+            assertEquals(2, hub.getProducer(ProducerType.BIDOFFER).getFeedMessagesMissed());
+
+            //-- The hub itself kept up
+            LagMonitor lagMonitor = hub.getConsumerManagerForPort(BID_OFFER_LAST_PRICE_INTERNAL_PORT).getLagMonitor();
+            waitTillTrue(() -> lagMonitor.getLag(ProducerType.BIDOFFER) == 0, 1, TimeUnit.SECONDS);
+            assertTrue(lagMonitor.getMaxLag(ProducerType.BIDOFFER) >= 1);
+            assertEquals(0, lagMonitor.getOverruns());
+            assertEquals(0, lagMonitor.getLostMessages());
+        }
+    }
+}
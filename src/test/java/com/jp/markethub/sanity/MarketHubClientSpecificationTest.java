@@ -0,0 +1,135 @@
+package com.jp.markethub.sanity;
+
+import com.jp.markethub.MarketHubTestBase;
+import com.jp.markethub.client.MarketDataListener;
+import com.jp.markethub.client.MarketHubClient;
+import com.jp.markethub.common.FixedPoint;
+import com.jp.markethub.common.SymbolTable;
+import com.jp.markethub.consumer.feature.OutputEncoding;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.jp.markethub.util.TestUtils.waitTillTrue;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class MarketHubClientSpecificationTest extends MarketHubTestBase {
+
+    @Test
+    public void clientMustDecodeTheCsvFeedIntoFixedPointPrices() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        try (MarketHubClient client = new MarketHubClient("localhost", BID_OFFER_LAST_PRICE_INTERNAL_PORT, OutputEncoding.CSV, listener)) {
+            client.start();
+            listener.awaitConnected();
+            waitForClient(BID_OFFER_LAST_PRICE_INTERNAL_PORT);
+
+            bidOfferFeed.publish("1,103.0,104.0;");
+            assertArrayEquals(new long[]{0, SymbolTable.NO_SYMBOL, 103_000_000, 104_000_000, FixedPoint.NULL}, listener.next());
+            lastPriceFeed.publish("1,103.5;");
+            assertArrayEquals(new long[]{1, SymbolTable.NO_SYMBOL, 103_000_000, 104_000_000, 103_500_000}, listener.next());
+        }
+    }
+
+    @Test
+    public void clientMustDecodeTheBinaryFeed() throws Exception {
+        int binaryPort = hub.getConfig().getBinaryPort();
+        RecordingListener listener = new RecordingListener();
+        try (MarketHubClient client = new MarketHubClient("localhost", binaryPort, OutputEncoding.BINARY, listener)) {
+            client.start();
+            listener.awaitConnected();
+            waitForClient(binaryPort);
+
+            bidOfferFeed.publish("1,103.0,104.0;");
+            assertArrayEquals(new long[]{0, SymbolTable.NO_SYMBOL, 103_000_000, 104_000_000, FixedPoint.NULL}, listener.next());
+        }
+    }
+
+    @Test
+    public void clientMustReconnectAndSubscribeAgain() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        try (ServerSocket server = new ServerSocket(0);
+             MarketHubClient client = new MarketHubClient("localhost", server.getLocalPort(), OutputEncoding.CSV, listener)) {
+            client.setReconnectDelay(10, 100, TimeUnit.MILLISECONDS);
+            client.subscribe("IBM");
+            client.start();
+
+            try (Socket first = server.accept()) {
+                assertEquals("SUB,IBM", readLine(first));
+                write(first, "0,IBM,103.0,104.0,\n");
+                long[] message = listener.next();
+                assertEquals("IBM", client.getSymbol((int) message[1]));
+                assertArrayEquals(new long[]{0, message[1], 103_000_000, 104_000_000, FixedPoint.NULL}, message);
+            }
+
+            //-- The hub went away, the client comes back and asks for the same symbols
+            try (Socket second = server.accept()) {
+                assertEquals("SUB,IBM", readLine(second));
+                //-- A message split over two reads is framed all the same
+                write(second, "1,IBM,103.5,104.5,");
+                Thread.sleep(50);
+                write(second, "99.0\n");
+                long[] message = listener.next();
+                assertArrayEquals(new long[]{1, message[1], 103_500_000, 104_500_000, 99_000_000}, message);
+                assertEquals(2, client.getConnections());
+                assertEquals(1, listener.disconnects.get());
+            }
+        }
+    }
+
+    private void waitForClient(int port) throws Exception {
+        waitTillTrue(() -> hub.getConsumerManagerForPort(port) != null
+                && hub.getConsumerManagerForPort(port).getTotalClients() == 1, 1, TimeUnit.SECONDS);
+    }
+
+    private static String readLine(Socket socket) throws Exception {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII)).readLine();
+    }
+
+    private static void write(Socket socket, String text) throws Exception {
+        OutputStream out = socket.getOutputStream();
+        out.write(text.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    private static final class RecordingListener implements MarketDataListener {
+        private final BlockingQueue<long[]> messages = new LinkedBlockingQueue<>();
+        private final AtomicInteger connects = new AtomicInteger();
+        private final AtomicInteger disconnects = new AtomicInteger();
+
+        @Override
+        public void onBidOfferLastPrice(long sequence, int symbolId, long bid, long offer, long last) {
+            messages.add(new long[]{sequence, symbolId, bid, offer, last});
+        }
+
+        @Override
+        public void onConnected() {
+            connects.incrementAndGet();
+        }
+
+        @Override
+        public void onDisconnected() {
+            disconnects.incrementAndGet();
+        }
+
+        void awaitConnected() throws Exception {
+            waitTillTrue(() -> connects.get() > 0, 1, TimeUnit.SECONDS);
+        }
+
+        long[] next() throws InterruptedException {
+            long[] message = messages.poll(1, TimeUnit.SECONDS);
+            assertNotNull("No message received", message);
+            return message;
+        }
+    }
+}
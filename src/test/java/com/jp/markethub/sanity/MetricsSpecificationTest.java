@@ -0,0 +1,88 @@
+package com.jp.markethub.sanity;
+
+import com.jp.markethub.MarketHubTestBase;
+import com.jp.markethub.config.MarketHubConfig;
+import com.jp.markethub.metrics.HubMetrics;
+import com.jp.markethub.metrics.Stage;
+import com.jp.markethub.mock.JpInternalConsumer;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static com.jp.markethub.sanity.MarketHubSpecificationTest.JP_STRIDE;
+import static com.jp.markethub.util.TestUtils.waitTillTrue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsSpecificationTest extends MarketHubTestBase {
+
+    @Override
+    protected MarketHubConfig createConfig() {
+        MarketHubConfig config = new MarketHubConfig();
+        config.setMetricsEnabled(true);
+        return config;
+    }
+
+    @Test
+    public void stageLatenciesMustBeServedOverJmxAndHttp() throws Exception {
+        try (JpInternalConsumer jpStride = new JpInternalConsumer(BID_OFFER_LAST_PRICE_INTERNAL_PORT, JP_STRIDE)) {
+            jpStride.connectToMarketHubAndListen();
+            waitTillTrue(() -> hub.getConsumerManagerForPort(BID_OFFER_LAST_PRICE_INTERNAL_PORT) != null
+                    && hub.getConsumerManagerForPort(BID_OFFER_LAST_PRICE_INTERNAL_PORT).getTotalClients() == 1, 1, TimeUnit.SECONDS);
+
+            bidOfferFeed.publish("1,103.0,104.0;");
+            bidOfferFeed.publish("2,104.0,105.0;");
+            waitTillTrue(() -> jpStride.allMessageCount() == 2, 2, TimeUnit.SECONDS);
+
+            HubMetrics metrics = hub.getMetrics();
+            waitTillTrue(() -> metrics.getPublishedMessages() == 2, 1, TimeUnit.SECONDS);
+            assertEquals(2, metrics.getHistogram(Stage.INGEST).getCount());
+            assertEquals(2, metrics.getDispatchedMessages());
+            assertTrue(metrics.getHistogram(Stage.PUBLISH).getP99() > 0);
+            assertTrue(metrics.getHistogram(Stage.PUBLISH).getP99() <= metrics.getHistogram(Stage.PUBLISH).getMax());
+
+            assertEquals(2L, ManagementFactory.getPlatformMBeanServer()
+                    .getAttribute(new ObjectName("com.jp.markethub:type=Throughput"), "IngestedMessages"));
+
+            String text = get("http://localhost:" + hub.getConfig().getMetricsPort() + "/metrics");
+            assertTrue(text, text.contains("markethub_ingested_messages_total 2\n"));
+            assertTrue(text, text.contains("markethub_latency_nanos_count{stage=\"dispatch\"} 2\n"));
+            assertTrue(text, text.contains("markethub_latency_nanos{stage=\"publish\",quantile=\"0.999\"}"));
+        }
+    }
+
+    @Test
+    public void unregisteringMustOnlyRemoveTheMBeansOfTheHub() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName foreign = new ObjectName("com.jp.markethub:type=Foreign");
+        HubMetrics other = new HubMetrics();
+        server.registerMBean(other, foreign);
+        try {
+            hub.getMetrics().unregisterMBeans();
+            assertFalse(server.isRegistered(new ObjectName("com.jp.markethub:type=Throughput")));
+            assertTrue(server.isRegistered(foreign));
+        } finally {
+            server.unregisterMBean(foreign);
+        }
+    }
+
+    private static String get(String url) throws Exception {
+        try (InputStream in = new URL(url).openStream()) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] chunk = new byte[1024];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                body.write(chunk, 0, read);
+            }
+            return new String(body.toByteArray(), StandardCharsets.US_ASCII);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.jp.markethub.sanity;
+
+import com.jp.markethub.MarketHubTestBase;
+import com.jp.markethub.config.MarketHubConfig;
+import com.jp.markethub.transport.MulticastPublisher;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class MulticastSpecificationTest extends MarketHubTestBase {
+    private static final String GROUP = "239.1.1.1";
+    private static final int MULTICAST_PORT = 10100;
+    private static final int RETRANSMIT_PORT = 10101;
+
+    @Override
+    protected MarketHubConfig createConfig() {
+        MarketHubConfig config = new MarketHubConfig();
+        config.setMulticastGroup(GROUP);
+        config.setMulticastPort(MULTICAST_PORT);
+        config.setRetransmitPort(RETRANSMIT_PORT);
+        return config;
+    }
+
+    @Test
+    public void listenerMustReceiveSequencedDatagramsAndRecoverGaps() throws Exception {
+        try (DatagramChannel listener = DatagramChannel.open(StandardProtocolFamily.INET)) {
+            listener.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            listener.bind(new InetSocketAddress(MULTICAST_PORT));
+            listener.join(InetAddress.getByName(GROUP), NetworkInterface.getByName("lo"));
+
+            bidOfferFeed.publish("1,103.0,104.0;");
+            assertDatagram(listener, 0, "0,103.0,104.0,\n");
+            bidOfferFeed.publish("2,104.0,105.0;");
+            assertDatagram(listener, 1, "1,104.0,105.0,\n");
+
+            //-- Pretend both were lost and ask for them again
+            ByteBuffer request = ByteBuffer.allocate(16);
+            request.putLong(0).putLong(2).flip();
+            listener.send(request, new InetSocketAddress("localhost", RETRANSMIT_PORT));
+            assertDatagram(listener, 0, "0,103.0,104.0,\n");
+            assertDatagram(listener, 1, "1,104.0,105.0,\n");
+        }
+    }
+
+    private void assertDatagram(DatagramChannel listener, long sequence, String payload) throws IOException, InterruptedException {
+        ByteBuffer datagram = receive(listener);
+        assertNotNull("No datagram received for sequence " + sequence, datagram);
+        assertEquals(sequence, datagram.getLong());
+        int length = datagram.getInt();
+        assertEquals(MulticastPublisher.HEADER_LENGTH + length, datagram.limit());
+        byte[] bytes = new byte[length];
+        datagram.get(bytes);
+        assertEquals(payload, new String(bytes, StandardCharsets.US_ASCII));
+    }
+
+    private ByteBuffer receive(DatagramChannel listener) throws IOException, InterruptedException {
+        listener.configureBlocking(false);
+        ByteBuffer datagram = ByteBuffer.allocate(2048);
+        for (int i = 0; i < 40; i++) {
+            if (listener.receive(datagram) != null) {
+                datagram.flip();
+                return datagram;
+            }
+            Thread.sleep(50);
+        }
+        return null;
+    }
+}
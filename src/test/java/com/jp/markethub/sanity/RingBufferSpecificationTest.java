@@ -0,0 +1,69 @@
+package com.jp.markethub.sanity;
+
+import com.jp.markethub.common.RingBuffer;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class RingBufferSpecificationTest {
+
+    @Test
+    public void recordsLargerThanTheOldFixedSlotMustComeBackWhole() {
+        RingBuffer ring = new RingBuffer(16, 1 << 16, 4096);
+        ByteBuffer view = ring.newReadView();
+        byte[] record = record(1000, (byte) 'a');
+        ring.write(0, ByteBuffer.wrap(record));
+
+        byte[] dst = new byte[ring.getMaxRecordLength()];
+        assertEquals(1000, ring.getData(0, dst, view));
+        assertArrayEquals(record, Arrays.copyOf(dst, 1000));
+    }
+
+    @Test
+    public void readerLappedBySlotsMustBeToldTheRecordIsGone() {
+        RingBuffer ring = new RingBuffer(4, 1 << 12, 256);
+        ByteBuffer view = ring.newReadView();
+        for (int seq = 0; seq < 8; seq++) {
+            ring.write(seq, ByteBuffer.wrap(record(10, (byte) seq)));
+        }
+        byte[] dst = new byte[256];
+        assertEquals(-1, ring.getData(0, dst, view));
+        assertEquals(-1, ring.getData(3, dst, view));
+        assertEquals(10, ring.getData(7, dst, view));
+        assertEquals(7, dst[0]);
+    }
+
+    @Test
+    public void recordThatWouldStraddleTheEndOfTheSlabMustWrapAroundWhole() {
+        RingBuffer ring = new RingBuffer(16, 1024, 400);
+        ByteBuffer view = ring.newReadView();
+        for (int seq = 0; seq < 4; seq++) {
+            ring.write(seq, ByteBuffer.wrap(record(300, (byte) seq)));
+        }
+        byte[] dst = new byte[400];
+        //-- The fourth record starts over at the beginning of the slab, on top of the first one only
+        assertEquals(-1, ring.getData(0, dst, view));
+        assertEquals(300, ring.getData(1, dst, view));
+        assertArrayEquals(record(300, (byte) 1), Arrays.copyOf(dst, 300));
+        assertEquals(300, ring.getData(3, dst, view));
+        assertArrayEquals(record(300, (byte) 3), Arrays.copyOf(dst, 300));
+    }
+
+    @Test
+    public void recordThatDoesNotFitTheReaderMustBeReportedNotThrown() {
+        RingBuffer ring = new RingBuffer(16, 1 << 16, 4096);
+        ByteBuffer view = ring.newReadView();
+        ring.write(0, ByteBuffer.wrap(record(1000, (byte) 'a')));
+        assertEquals(-1, ring.getData(0, new byte[100], view));
+    }
+
+    private static byte[] record(int length, byte value) {
+        byte[] record = new byte[length];
+        Arrays.fill(record, value);
+        return record;
+    }
+}
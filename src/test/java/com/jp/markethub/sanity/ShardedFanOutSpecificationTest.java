@@ -0,0 +1,63 @@
+package com.jp.markethub.sanity;
+
+import com.jp.markethub.MarketHubTestBase;
+import com.jp.markethub.common.wait.WaitStrategyType;
+import com.jp.markethub.config.MarketHubConfig;
+import com.jp.markethub.mock.JpInternalConsumer;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.jp.markethub.sanity.MarketHubSpecificationTest.JP_STRIDE;
+import static com.jp.markethub.util.TestUtils.waitTillTrue;
+import static org.junit.Assert.assertEquals;
+
+public class ShardedFanOutSpecificationTest extends MarketHubTestBase {
+
+    @Override
+    protected MarketHubConfig createConfig() {
+        MarketHubConfig config = new MarketHubConfig();
+        config.setKeyedFeeds(true);
+        config.setFanOutShards(BID_OFFER_LAST_PRICE_INTERNAL_PORT, 2);
+        config.setWaitStrategy(BID_OFFER_LAST_PRICE_INTERNAL_PORT, WaitStrategyType.PROGRESSIVE_PARK);
+        return config;
+    }
+
+    @Test
+    public void clientsOfEveryShardMustReceiveTheirMessagesInOrder() throws Exception {
+        try (JpInternalConsumer jpStride = new JpInternalConsumer(BID_OFFER_LAST_PRICE_INTERNAL_PORT, JP_STRIDE);
+             JpInternalConsumer everything = new JpInternalConsumer(BID_OFFER_LAST_PRICE_INTERNAL_PORT, "everything");
+             JpInternalConsumer late = new JpInternalConsumer(BID_OFFER_LAST_PRICE_INTERNAL_PORT, "late")) {
+            jpStride.connectToMarketHubAndListen();
+            everything.connectToMarketHubAndListen();
+            waitTillTrue(() -> hub.getConsumerManagerForPort(BID_OFFER_LAST_PRICE_INTERNAL_PORT) != null
+                    && hub.getConsumerManagerForPort(BID_OFFER_LAST_PRICE_INTERNAL_PORT).getTotalClients() == 2, 1, TimeUnit.SECONDS);
+
+            //-- The two clients sit on different shards, routing still applies
+            jpStride.send("SUB,MSFT\n");
+            waitTillTrue(() -> hub.getConsumerManagerForPort(BID_OFFER_LAST_PRICE_INTERNAL_PORT).getSubscriptions().hasFilteredClients(), 1, TimeUnit.SECONDS);
+
+            bidOfferFeed.publish("IBM,103.0,104.0;");
+            bidOfferFeed.publish("MSFT,50.0,51.0;");
+            waitTillTrue(() -> everything.allMessageCount() == 2, 2, TimeUnit.SECONDS);
+            assertEquals("0,IBM,103.0,104.0,", everything.getNextMessage(1, TimeUnit.SECONDS));
+            assertEquals("1,MSFT,50.0,51.0,", everything.getNextMessage(1, TimeUnit.SECONDS));
+            assertEquals("1,MSFT,50.0,51.0,", jpStride.getNextMessage(1, TimeUnit.SECONDS));
+            assertEquals(0, jpStride.allMessageCount());
+
+            //-- A late joiner gets its snapshot through its shard ahead of the live updates
+            late.connectToMarketHubAndListen();
+            assertEquals("1,IBM,103.0,104.0,", late.getNextMessage(1, TimeUnit.SECONDS));
+            assertEquals("1,MSFT,50.0,51.0,", late.getNextMessage(1, TimeUnit.SECONDS));
+
+            bidOfferFeed.publish("IBM,103.5,104.5;");
+            assertEquals("2,IBM,103.5,104.5,", late.getNextMessage(1, TimeUnit.SECONDS));
+            assertEquals("2,IBM,103.5,104.5,", everything.getNextMessage(1, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void portMustHaveAtLeastOneShard() {
+        new MarketHubConfig().setFanOutShards(BID_OFFER_LAST_PRICE_INTERNAL_PORT, 0);
+    }
+}
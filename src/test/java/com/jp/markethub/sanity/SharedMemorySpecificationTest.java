@@ -0,0 +1,60 @@
+package com.jp.markethub.sanity;
+
+import com.jp.markethub.MarketHubTestBase;
+import com.jp.markethub.config.MarketHubConfig;
+import com.jp.markethub.transport.ipc.SharedMemoryReader;
+import com.jp.markethub.util.TestUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class SharedMemorySpecificationTest extends MarketHubTestBase {
+    private File file;
+
+    @Override
+    protected MarketHubConfig createConfig() {
+        try {
+            file = File.createTempFile("markethub", ".ipc");
+            file.deleteOnExit();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        MarketHubConfig config = new MarketHubConfig();
+        config.setSharedMemoryFile(file.getAbsolutePath());
+        return config;
+    }
+
+    @Test
+    public void everyLocalReaderMustSeeEveryMessageThroughItsOwnCursor() throws Exception {
+        try (SharedMemoryReader first = new SharedMemoryReader(file.getAbsolutePath());
+             SharedMemoryReader second = new SharedMemoryReader(file.getAbsolutePath())) {
+            //-- Nobody reports a lost message here, so make sure the hub is reading the feed first
+            TestUtils.waitTillTrue(bidOfferFeed::isConnected, 1, TimeUnit.SECONDS);
+            bidOfferFeed.publish("1,103.0,104.0;");
+            bidOfferFeed.publish("2,104.0,105.0;");
+
+            assertEquals("0,103.0,104.0,\n", poll(first));
+            assertEquals("1,104.0,105.0,\n", poll(first));
+            assertEquals("0,103.0,104.0,\n", poll(second));
+            assertEquals("1,104.0,105.0,\n", poll(second));
+            assertEquals(0, first.getGaps());
+        }
+    }
+
+    private String poll(SharedMemoryReader reader) throws InterruptedException {
+        byte[] message = new byte[1024];
+        for (int i = 0; i < 40; i++) {
+            int length = reader.poll(message);
+            if (length > 0) {
+                return new String(message, 0, length, StandardCharsets.US_ASCII);
+            }
+            Thread.sleep(50);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,177 @@
+package com.jp.markethub.sanity;
+
+import com.jp.markethub.MarketHubTestBase;
+import com.jp.markethub.config.MarketHubConfig;
+import com.jp.markethub.consumer.ConsumerManager;
+import com.jp.markethub.mock.JpInternalConsumer;
+import com.jp.markethub.transport.ClientSession;
+import com.jp.markethub.transport.OverflowPolicy;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static com.jp.markethub.util.TestUtils.waitTillTrue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class SlowClientSpecificationTest extends MarketHubTestBase {
+    @Rule
+    public final TestName test = new TestName();
+
+    //-- Every test runs against the overflow policy its name starts with
+    @Override
+    protected MarketHubConfig createConfig() {
+        MarketHubConfig config = new MarketHubConfig();
+        config.setKeyedFeeds(true);
+        for (OverflowPolicy policy : OverflowPolicy.values()) {
+            if (test.getMethodName().toUpperCase().startsWith(policy.name())) {
+                config.setOverflowPolicy(BID_OFFER_LAST_PRICE_INTERNAL_PORT, policy);
+            }
+        }
+        return config;
+    }
+
+    @Test
+    public void disconnectingPortMustDropTheStalledClientOnly() throws Exception {
+        //-- Only held open, never read from
+        SocketChannel stalled = connectClient();
+        try (JpInternalConsumer healthy = new JpInternalConsumer(BID_OFFER_LAST_PRICE_INTERNAL_PORT, "healthy")) {
+            healthy.connectToMarketHubAndListen();
+            waitTillTrue(() -> getManager().getTotalClients() == 2, 1, TimeUnit.SECONDS);
+
+            flood(() -> getManager().getTotalClients() == 1);
+            assertEquals(1, getManager().getTotalClients());
+            //-- The hub forgets the dropped client along with the publisher
+            waitTillTrue(() -> hub.getConnectedClients() == 1, 1, TimeUnit.SECONDS);
+
+            //-- The client that keeps up is still served
+            bidOfferFeed.publish("LAST,1.0,2.0;");
+            String message;
+            do {
+                message = healthy.getNextMessage(5, TimeUnit.SECONDS);
+                assertNotNull("Healthy client was not served", message);
+            } while (!message.endsWith(",LAST,1.0,2.0,"));
+        } finally {
+            stalled.close();
+        }
+    }
+
+    @Test
+    public void dropPortMustKeepTheStalledClientAndDropWhatDoesNotFit() throws Exception {
+        try (SocketChannel client = connectClient()) {
+            flood(() -> session().getDroppedMessages() > 0);
+            assertEquals(1, getManager().getTotalClients());
+
+            //-- Once the client has read its backlog it is back in the fan-out
+            drain(client);
+            bidOfferFeed.publish("LAST,1.0,2.0;");
+            readUntil(client, "LAST,1.0,2.0,");
+            assertEquals(1, getManager().getTotalClients());
+        }
+    }
+
+    @Test
+    public void conflatingClientMustGetTheLatestValueOfEveryInstrument() throws Exception {
+        try (SocketChannel client = connectClient()) {
+            flood(() -> session().hasPendingData());
+
+            bidOfferFeed.publish("IBM,103.0,104.0;MSFT,50.0,51.0;IBM,103.5,104.5;");
+            bidOfferFeed.publish("FILL,9.0,9.5;");
+
+            //-- Once the client reads again, only the newest message of every instrument is left to come
+            Map<String, String> latest = readUntil(client, "FILL,9.0,9.5,");
+            assertEquals("IBM,103.5,104.5,", latest.get("IBM"));
+            assertEquals("MSFT,50.0,51.0,", latest.get("MSFT"));
+        }
+    }
+
+    //-- A client that never reads until told to, with a small receive window so it backs up early
+    private SocketChannel connectClient() throws Exception {
+        SocketChannel client = SocketChannel.open();
+        client.setOption(StandardSocketOptions.SO_RCVBUF, 1024);
+        client.connect(new InetSocketAddress("localhost", BID_OFFER_LAST_PRICE_INTERNAL_PORT));
+        waitTillTrue(() -> getManager() != null && getManager().getTotalClients() == 1, 1, TimeUnit.SECONDS);
+        waitTillTrue(bidOfferFeed::isConnected, 1, TimeUnit.SECONDS);
+        return client;
+    }
+
+    //-- Floods the port until the stalled client has reached the given state
+    private void flood(BooleanSupplier stalled) throws Exception {
+        StringBuilder filler = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            filler.append("FILL,1.0,2.0;");
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!stalled.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Client never stalled");
+            }
+            bidOfferFeed.publish(filler.toString());
+            Thread.sleep(10);
+        }
+    }
+
+    private ConsumerManager getManager() {
+        return hub.getConsumerManagerForPort(BID_OFFER_LAST_PRICE_INTERNAL_PORT);
+    }
+
+    //-- The stalled client, the first to connect
+    private ClientSession session() {
+        Iterator<ClientSession> clients = getManager().getClients();
+        return clients.next();
+    }
+
+    //-- Reads whatever the client was sent until nothing more comes for a while
+    private static void drain(SocketChannel client) throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        client.configureBlocking(false);
+        long quietSince = System.nanoTime();
+        while (System.nanoTime() - quietSince < TimeUnit.MILLISECONDS.toNanos(200)) {
+            buffer.clear();
+            if (client.read(buffer) > 0) {
+                quietSince = System.nanoTime();
+            }
+        }
+    }
+
+    //-- Last message received per symbol, without its sequence, up to the one ending in last
+    private static Map<String, String> readUntil(SocketChannel client, String last) throws Exception {
+        Map<String, String> latest = new HashMap<>();
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        StringBuilder line = new StringBuilder();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        client.configureBlocking(false);
+        while (System.nanoTime() < deadline) {
+            buffer.clear();
+            client.read(buffer);
+            buffer.flip();
+            CharBuffer chars = StandardCharsets.US_ASCII.decode(buffer);
+            while (chars.hasRemaining()) {
+                char c = chars.get();
+                if (c != '\n') {
+                    line.append(c);
+                    continue;
+                }
+                String message = line.substring(line.indexOf(",") + 1);
+                line.setLength(0);
+                latest.put(message.substring(0, message.indexOf(',')), message);
+                if (message.equals(last)) {
+                    return latest;
+                }
+            }
+        }
+        throw new AssertionError("Never received " + last);
+    }
+}
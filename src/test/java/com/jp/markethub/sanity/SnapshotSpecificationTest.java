@@ -0,0 +1,45 @@
+package com.jp.markethub.sanity;
+
+import com.jp.markethub.MarketHubTestBase;
+import com.jp.markethub.config.MarketHubConfig;
+import com.jp.markethub.mock.JpInternalConsumer;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.jp.markethub.sanity.MarketHubSpecificationTest.JP_STRIDE;
+import static com.jp.markethub.util.TestUtils.waitTillTrue;
+import static org.junit.Assert.assertEquals;
+
+public class SnapshotSpecificationTest extends MarketHubTestBase {
+
+    @Override
+    protected MarketHubConfig createConfig() {
+        MarketHubConfig config = new MarketHubConfig();
+        config.setKeyedFeeds(true);
+        return config;
+    }
+
+    @Test
+    public void lateJoinerMustReceiveCurrentStateBeforeLiveUpdates() throws Exception {
+        try (JpInternalConsumer early = new JpInternalConsumer(BID_OFFER_LAST_PRICE_INTERNAL_PORT, "early");
+             JpInternalConsumer jpStride = new JpInternalConsumer(BID_OFFER_LAST_PRICE_INTERNAL_PORT, JP_STRIDE)) {
+            early.connectToMarketHubAndListen();
+            waitTillTrue(() -> hub.getConsumerManagerForPort(BID_OFFER_LAST_PRICE_INTERNAL_PORT) != null
+                    && hub.getConsumerManagerForPort(BID_OFFER_LAST_PRICE_INTERNAL_PORT).getTotalClients() == 1, 1, TimeUnit.SECONDS);
+
+            bidOfferFeed.publish("IBM,103.0,104.0;");
+            bidOfferFeed.publish("MSFT,50.0,51.0;");
+            bidOfferFeed.publish("IBM,103.5,104.5;");
+            waitTillTrue(() -> early.allMessageCount() == 3, 2, TimeUnit.SECONDS);
+
+            //-- The late joiner gets the last values of every instrument as of the last sequence
+            jpStride.connectToMarketHubAndListen();
+            assertEquals("2,IBM,103.5,104.5,", jpStride.getNextMessage(1, TimeUnit.SECONDS));
+            assertEquals("2,MSFT,50.0,51.0,", jpStride.getNextMessage(1, TimeUnit.SECONDS));
+
+            bidOfferFeed.publish("MSFT,50.5,51.5;");
+            assertEquals("3,MSFT,50.5,51.5,", jpStride.getNextMessage(1, TimeUnit.SECONDS));
+        }
+    }
+}
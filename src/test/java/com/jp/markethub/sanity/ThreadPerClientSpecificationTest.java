@@ -0,0 +1,71 @@
+package com.jp.markethub.sanity;
+
+import com.jp.markethub.MarketHubTestBase;
+import com.jp.markethub.config.MarketHubConfig;
+import com.jp.markethub.mock.JpInternalConsumer;
+import com.jp.markethub.transport.SessionMode;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.jp.markethub.sanity.MarketHubSpecificationTest.JP_STRIDE;
+import static com.jp.markethub.util.TestUtils.waitTillTrue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ThreadPerClientSpecificationTest extends MarketHubTestBase {
+
+    @Override
+    protected MarketHubConfig createConfig() {
+        MarketHubConfig config = new MarketHubConfig();
+        config.setKeyedFeeds(true);
+        config.setSessionMode(BID_OFFER_LAST_PRICE_INTERNAL_PORT, SessionMode.THREAD_PER_CLIENT);
+        return config;
+    }
+
+    @Test
+    public void everyClientMustReceiveItsMessagesInOrderFromItsOwnThread() throws Exception {
+        try (JpInternalConsumer early = new JpInternalConsumer(BID_OFFER_LAST_PRICE_INTERNAL_PORT, "early")) {
+            early.connectToMarketHubAndListen();
+            waitTillTrue(() -> hub.getConsumerManagerForPort(BID_OFFER_LAST_PRICE_INTERNAL_PORT) != null
+                    && hub.getConsumerManagerForPort(BID_OFFER_LAST_PRICE_INTERNAL_PORT).getTotalClients() == 1, 1, TimeUnit.SECONDS);
+
+            bidOfferFeed.publish("IBM,103.0,104.0;");
+            bidOfferFeed.publish("MSFT,50.0,51.0;");
+            assertEquals("0,IBM,103.0,104.0,", early.getNextMessage(1, TimeUnit.SECONDS));
+            assertEquals("1,MSFT,50.0,51.0,", early.getNextMessage(1, TimeUnit.SECONDS));
+            //-- Virtual threads are not listed with the platform ones
+            assertTrue(hub.getThreads().hasVirtualSessions() || sessionThreadExists());
+
+            try (JpInternalConsumer jpStride = new JpInternalConsumer(BID_OFFER_LAST_PRICE_INTERNAL_PORT, JP_STRIDE)) {
+                //-- A late joiner gets its snapshot queued ahead of the live updates, routing still applies
+                jpStride.connectToMarketHubAndListen();
+                assertEquals("1,IBM,103.0,104.0,", jpStride.getNextMessage(1, TimeUnit.SECONDS));
+                assertEquals("1,MSFT,50.0,51.0,", jpStride.getNextMessage(1, TimeUnit.SECONDS));
+                jpStride.send("SUB,MSFT\n");
+                waitTillTrue(() -> hub.getConsumerManagerForPort(BID_OFFER_LAST_PRICE_INTERNAL_PORT).getSubscriptions().hasFilteredClients(), 1, TimeUnit.SECONDS);
+
+                bidOfferFeed.publish("IBM,103.5,104.5;");
+                bidOfferFeed.publish("MSFT,50.5,51.5;");
+                assertEquals("2,IBM,103.5,104.5,", early.getNextMessage(1, TimeUnit.SECONDS));
+                assertEquals("3,MSFT,50.5,51.5,", early.getNextMessage(1, TimeUnit.SECONDS));
+                assertEquals("3,MSFT,50.5,51.5,", jpStride.getNextMessage(1, TimeUnit.SECONDS));
+                assertEquals(0, jpStride.allMessageCount());
+            }
+
+            //-- A client leaving ends its session thread and nobody else notices
+            waitTillTrue(() -> hub.getConsumerManagerForPort(BID_OFFER_LAST_PRICE_INTERNAL_PORT).getTotalClients() == 1, 1, TimeUnit.SECONDS);
+            bidOfferFeed.publish("IBM,104.0,105.0;");
+            assertEquals("4,IBM,104.0,105.0,", early.getNextMessage(1, TimeUnit.SECONDS));
+        }
+    }
+
+    private static boolean sessionThreadExists() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("session-" + BID_OFFER_LAST_PRICE_INTERNAL_PORT + "-")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
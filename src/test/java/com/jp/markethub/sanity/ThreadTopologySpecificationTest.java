@@ -0,0 +1,68 @@
+package com.jp.markethub.sanity;
+
+import com.jp.markethub.MarketHubTestBase;
+import com.jp.markethub.common.thread.ThreadRole;
+import com.jp.markethub.config.MarketHubConfig;
+import com.jp.markethub.mock.JpInternalConsumer;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import static com.jp.markethub.sanity.MarketHubSpecificationTest.JP_STRIDE;
+import static com.jp.markethub.util.TestUtils.waitTillTrue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class ThreadTopologySpecificationTest extends MarketHubTestBase {
+
+    @Override
+    protected MarketHubConfig createConfig() {
+        MarketHubConfig config = new MarketHubConfig();
+        config.setCpuAffinity(ThreadRole.ACCEPTOR, "0");
+        config.setCpuAffinity(ThreadRole.FEATURE, "0");
+        return config;
+    }
+
+    @Test
+    public void everyRoleMustRunOnANamedThreadPinnedToItsCpus() throws Exception {
+        try (JpInternalConsumer jpStride = new JpInternalConsumer(BID_OFFER_LAST_PRICE_INTERNAL_PORT, JP_STRIDE)) {
+            jpStride.connectToMarketHubAndListen();
+            waitTillTrue(() -> hub.getThreads().getThreadCount(ThreadRole.FEATURE) == 1, 1, TimeUnit.SECONDS);
+            assertEquals(1, hub.getThreads().getThreadCount(ThreadRole.ACCEPTOR));
+            assertEquals(1, hub.getThreads().getThreadCount(ThreadRole.INGEST));
+
+            bidOfferFeed.publish("0,103.0,104.0;");
+            assertEquals("0,103.0,104.0,", jpStride.getNextMessage(1, TimeUnit.SECONDS));
+
+            //-- The native name of a thread is its java name, which is how its affinity is found
+            if (new File("/proc/self/task").isDirectory()) {
+                assertEquals("0", cpusAllowed("acceptor"));
+                assertEquals("0", cpusAllowed("feature-" + BID_OFFER_LAST_PRICE_INTERNAL_PORT));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cpuListMustBeValid() {
+        new MarketHubConfig().setCpuAffinity(ThreadRole.INGEST, "0-,3");
+    }
+
+    private static String cpusAllowed(String threadName) throws Exception {
+        File[] tasks = new File("/proc/self/task").listFiles();
+        assertNotNull(tasks);
+        for (File task : tasks) {
+            String comm = new String(Files.readAllBytes(new File(task, "comm").toPath()), StandardCharsets.US_ASCII).trim();
+            if (comm.equals(threadName)) {
+                for (String line : Files.readAllLines(new File(task, "status").toPath(), StandardCharsets.US_ASCII)) {
+                    if (line.startsWith("Cpus_allowed_list:")) {
+                        return line.substring("Cpus_allowed_list:".length()).trim();
+                    }
+                }
+            }
+        }
+        return null;
+    }
+}
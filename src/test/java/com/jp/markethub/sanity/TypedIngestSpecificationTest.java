@@ -0,0 +1,42 @@
+package com.jp.markethub.sanity;
+
+import com.jp.markethub.common.FixedPoint;
+import com.jp.markethub.common.MarketRecord;
+import com.jp.markethub.config.MarketHubConfig;
+import com.jp.markethub.producer.Producer;
+import com.jp.markethub.producer.ProducerType;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.jp.markethub.util.TestUtils.waitTillTrue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+//-- The binary port must publish the same messages when it reads the decoded columns instead of the text
+public class TypedIngestSpecificationTest extends BinaryEncodingSpecificationTest {
+
+    @Override
+    protected MarketHubConfig createConfig() {
+        MarketHubConfig config = new MarketHubConfig();
+        config.setTypedIngest(true);
+        return config;
+    }
+
+    @Test
+    public void producerMustDecodeEveryMessageOnce() throws Exception {
+        waitTillTrue(lastPriceFeed::isConnected, 1, TimeUnit.SECONDS);
+        lastPriceFeed.publish("1,103.5;");
+        lastPriceFeed.publish("2,-0.0000015;");
+
+        Producer producer = hub.getProducer(ProducerType.LASTPRICE);
+        waitTillTrue(() -> producer.getSequencer().get() == 2, 1, TimeUnit.SECONDS);
+
+        MarketRecord record = new MarketRecord();
+        assertTrue(producer.getRecord(0, record));
+        assertEquals(103_500_000L, record.getLast());
+        assertEquals(FixedPoint.NULL, record.getBid());
+        assertTrue(producer.getRecord(1, record));
+        assertEquals(-1L, record.getLast());
+    }
+}
@@ -0,0 +1,42 @@
+package com.jp.markethub.sanity;
+
+import com.jp.markethub.MarketHubTestBase;
+import com.jp.markethub.common.wait.WaitStrategyType;
+import com.jp.markethub.config.MarketHubConfig;
+import com.jp.markethub.mock.JpInternalConsumer;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.jp.markethub.sanity.MarketHubSpecificationTest.JP_ALGO;
+import static com.jp.markethub.util.TestUtils.waitTillTrue;
+import static org.junit.Assert.assertEquals;
+
+public class WaitStrategySpecificationTest extends MarketHubTestBase {
+
+    @Override
+    protected MarketHubConfig createConfig() {
+        MarketHubConfig config = new MarketHubConfig();
+        config.setWaitStrategy(BID_OFFER_LAST_PRICE_INTERNAL_PORT, WaitStrategyType.BLOCKING);
+        return config;
+    }
+
+    @Test
+    public void blockingConsumerMustBeWokenUpByEveryPublish() throws Exception {
+        try (JpInternalConsumer jpAlgo = new JpInternalConsumer(BID_OFFER_LAST_PRICE_INTERNAL_PORT, JP_ALGO)) {
+            jpAlgo.connectToMarketHubAndListen();
+            jpAlgo.awaitConnectionToMarketHub(1, TimeUnit.SECONDS);
+
+            //-- Let the consumer go to sleep before anything is published
+            Thread.sleep(100);
+            bidOfferFeed.publish("1,103.0,104.0;");
+            jpAlgo.awaitFirstMessage(2, TimeUnit.SECONDS);
+            assertEquals("0,103.0,104.0,", jpAlgo.getNextMessage(1, TimeUnit.SECONDS));
+
+            Thread.sleep(100);
+            bidOfferFeed.publish("2,104.0,105.0;");
+            waitTillTrue(() -> jpAlgo.allMessageCount() > 0, 2, TimeUnit.SECONDS);
+            assertEquals("1,104.0,105.0,", jpAlgo.getNextMessage(1, TimeUnit.SECONDS));
+        }
+    }
+}